@@ -0,0 +1,477 @@
+package com.glookast.api.capture;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpVersion;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.Configurable;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.Cancellable;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HTTP;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@SuppressWarnings("WeakerAccess")
+public class JdkHttpCaptureTransport implements CaptureTransport
+{
+    private static final Set<String> RESTRICTED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    private static final ExecutorService BODY_WRITER = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "JdkHttpCaptureTransport-body");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        RESTRICTED_HEADERS.addAll(List.of(HTTP.CONTENT_LEN, HTTP.CONN_DIRECTIVE, HTTP.TARGET_HOST, HTTP.EXPECT_DIRECTIVE, HTTP.TRANSFER_ENCODING, "Upgrade"));
+    }
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public JdkHttpCaptureTransport()
+    {
+        this(HttpClient.Version.HTTP_2, Duration.ofSeconds(5));
+    }
+
+    // HTTP_2 negotiates h2c on the first request and falls back to HTTP/1.1 when the server does not upgrade
+    public JdkHttpCaptureTransport(HttpClient.Version version, Duration requestTimeout)
+    {
+        this.client = HttpClient.newBuilder()
+                                .version(version)
+                                .connectTimeout(requestTimeout)
+                                .build();
+        this.requestTimeout = requestTimeout;
+    }
+
+    @Override
+    public CloseableHttpResponse execute(HttpUriRequest request) throws IOException
+    {
+        Exchange<InputStream> exchange = new Exchange<>(HttpResponse.BodyHandlers.ofInputStream());
+        HttpRequest httpRequest = httpRequest(request, exchange);
+
+        HttpResponse<InputStream> response;
+        inFlight.incrementAndGet();
+        try {
+            // HttpUriRequest.abort() lands here, which is how a cancelled call context stops the exchange
+            CompletableFuture<HttpResponse<InputStream>> future = exchange.send(client, httpRequest, request);
+            response = future.get();
+            exchange.setBody(response.body());
+        } catch (InterruptedException e) {
+            inFlight.decrementAndGet();
+            exchange.cancel();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (CancellationException e) {
+            inFlight.decrementAndGet();
+            throw new InterruptedIOException("Request aborted");
+        } catch (ExecutionException e) {
+            inFlight.decrementAndGet();
+            // from JDK 16 on cancelling the future aborts the exchange and fails it with a CancellationException
+            if (exchange.isAborted() || e.getCause() instanceof CancellationException) {
+                throw new InterruptedIOException("Request aborted");
+            }
+            throw ioException(e.getCause());
+        } catch (RuntimeException e) {
+            inFlight.decrementAndGet();
+            throw e;
+        }
+
+        Response wrapped = new Response(response);
+        wrapped.setEntity(entity(new InputStreamEntity(response.body(), response.headers().firstValueAsLong(HTTP.CONTENT_LEN).orElse(-1)), response));
+        return wrapped;
+    }
+
+    // the body is read into memory by the client itself, so no thread waits for the response
+    @Override
+    public CompletableFuture<org.apache.http.HttpResponse> executeAsync(HttpUriRequest request)
+    {
+        CompletableFuture<org.apache.http.HttpResponse> future = new CompletableFuture<>();
+        Exchange<byte[]> exchange = new Exchange<>(HttpResponse.BodyHandlers.ofByteArray());
+        try {
+            HttpRequest httpRequest = httpRequest(request, exchange);
+            inFlight.incrementAndGet();
+            exchange.send(client, httpRequest, request).whenComplete((response, throwable) -> {
+                inFlight.decrementAndGet();
+                if (throwable != null) {
+                    Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+                    future.completeExceptionally(exchange.isAborted() ? new InterruptedIOException("Request aborted") : cause);
+                    return;
+                }
+                BasicHttpResponse buffered = new BasicHttpResponse(statusLine(response));
+                copyHeaders(buffered, response);
+                buffered.setEntity(entity(new ByteArrayEntity(response.body()), response));
+                future.complete(buffered);
+            });
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+
+        future.whenComplete((response, throwable) -> {
+            if (future.isCancelled()) {
+                request.abort();
+            }
+        });
+        return future;
+    }
+
+    private HttpRequest httpRequest(HttpUriRequest request, Exchange<?> exchange) throws IOException
+    {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request.getURI())
+                                                 .timeout(timeout(request))
+                                                 .method(request.getMethod(), bodyPublisher(request, exchange));
+
+        for (Header header : request.getAllHeaders()) {
+            if (!RESTRICTED_HEADERS.contains(header.getName())) {
+                builder.header(header.getName(), header.getValue());
+            }
+        }
+        return builder.build();
+    }
+
+    private Duration timeout(HttpUriRequest request)
+    {
+        RequestConfig config = request instanceof Configurable ? ((Configurable) request).getConfig() : null;
+        if (config != null && config.getSocketTimeout() > 0) {
+            Duration timeout = Duration.ofMillis(config.getSocketTimeout());
+            return timeout.compareTo(requestTimeout) < 0 ? timeout : requestTimeout;
+        }
+        return requestTimeout;
+    }
+
+    @Override
+    public PoolStats getPoolStats()
+    {
+        // connections are managed by the JDK client, so only the number of outstanding exchanges is known
+        return new PoolStats(inFlight.get(), 0, 0, 0);
+    }
+
+    @Override
+    public void close()
+    {
+    }
+
+    private static HttpRequest.BodyPublisher bodyPublisher(HttpUriRequest request, Exchange<?> exchange) throws IOException
+    {
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null && (entity.isChunked() || entity.getContentLength() < 0)) {
+                // sent with chunked transfer encoding as it is written, like the Apache transport does
+                return HttpRequest.BodyPublishers.ofInputStream(() -> exchange.setRequestBody(pipe(entity)));
+            }
+            if (entity != null) {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                entity.writeTo(body);
+                return HttpRequest.BodyPublishers.ofByteArray(body.toByteArray());
+            }
+        }
+        return HttpRequest.BodyPublishers.noBody();
+    }
+
+    private static InputStream pipe(HttpEntity entity)
+    {
+        EntityPipe pipe = new EntityPipe();
+        PipedOutputStream outputStream;
+        try {
+            outputStream = new PipedOutputStream(pipe);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        BODY_WRITER.execute(() -> {
+            try {
+                // Jackson closes its target when a write fails, which would end the body before the failure is recorded
+                entity.writeTo(new FilterOutputStream(outputStream)
+                {
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException
+                    {
+                        out.write(b, off, len);
+                    }
+
+                    @Override
+                    public void close() throws IOException
+                    {
+                        flush();
+                    }
+                });
+            } catch (IOException | RuntimeException e) {
+                pipe.failure = e;
+            } finally {
+                // after the failure is recorded, so the reader never mistakes a failed write for the end of the body
+                try {
+                    outputStream.close();
+                } catch (IOException ignored) {
+                    // the reader has gone away
+                }
+            }
+        });
+        return pipe;
+    }
+
+    private static HttpEntity entity(AbstractHttpEntity entity, HttpResponse<?> response)
+    {
+        response.headers().firstValue(HTTP.CONTENT_TYPE).ifPresent(entity::setContentType);
+        response.headers().firstValue(HTTP.CONTENT_ENCODING).ifPresent(entity::setContentEncoding);
+        return entity;
+    }
+
+    private static void copyHeaders(BasicHttpResponse target, HttpResponse<?> response)
+    {
+        for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+            for (String value : header.getValue()) {
+                target.addHeader(header.getKey(), value);
+            }
+        }
+    }
+
+    private static BasicStatusLine statusLine(HttpResponse<?> response)
+    {
+        return new BasicStatusLine(protocolVersion(response.version()), response.statusCode(),
+                                   EnglishReasonPhraseCatalog.INSTANCE.getReason(response.statusCode(), Locale.ENGLISH));
+    }
+
+    private static IOException ioException(Throwable cause)
+    {
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        return new IOException(cause);
+    }
+
+    private class Response extends BasicHttpResponse implements CloseableHttpResponse
+    {
+        private final InputStream body;
+        private boolean closed;
+
+        private Response(HttpResponse<InputStream> response)
+        {
+            super(statusLine(response));
+            this.body = response.body();
+            copyHeaders(this, response);
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            inFlight.decrementAndGet();
+
+            // closing an unread body cancels the HTTP/2 stream or drops the HTTP/1.1 connection
+            body.close();
+        }
+    }
+
+    // JDK 11 ignores cancel(true) on the future returned by sendAsync and keeps the exchange going, so an abort also
+    // cancels the body subscription once the response headers arrive; before that only the request timeout bounds it
+    private static final class Exchange<T> implements HttpResponse.BodyHandler<T>, Cancellable
+    {
+        private final HttpResponse.BodyHandler<T> handler;
+
+        private volatile CompletableFuture<HttpResponse<T>> future;
+        private volatile Flow.Subscription subscription;
+        private volatile Closeable body;
+        private volatile Closeable requestBody;
+        private volatile boolean aborted;
+
+        private Exchange(HttpResponse.BodyHandler<T> handler)
+        {
+            this.handler = handler;
+        }
+
+        CompletableFuture<HttpResponse<T>> send(HttpClient client, HttpRequest httpRequest, HttpUriRequest request)
+        {
+            future = client.sendAsync(httpRequest, this);
+            // a body writer blocked on a pipe nobody reads any more fails once the pipe is closed
+            future.whenComplete((response, throwable) -> closeQuietly(requestBody));
+            if (request instanceof HttpRequestBase) {
+                ((HttpRequestBase) request).setCancellable(this);
+            }
+            if (aborted || request.isAborted()) {
+                cancel();
+            }
+            return future;
+        }
+
+        boolean isAborted()
+        {
+            return aborted;
+        }
+
+        InputStream setRequestBody(InputStream requestBody)
+        {
+            this.requestBody = requestBody;
+            if (aborted) {
+                closeQuietly(requestBody);
+            }
+            return requestBody;
+        }
+
+        // a reader blocked on the body is only woken up by closing it
+        void setBody(Closeable body)
+        {
+            this.body = body;
+            if (aborted) {
+                closeQuietly(body);
+            }
+        }
+
+        @Override
+        public boolean cancel()
+        {
+            aborted = true;
+            CompletableFuture<HttpResponse<T>> future = this.future;
+            if (future != null) {
+                future.cancel(true);
+            }
+            Flow.Subscription subscription = this.subscription;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+            closeQuietly(requestBody);
+            closeQuietly(body);
+            return true;
+        }
+
+        @Override
+        public HttpResponse.BodySubscriber<T> apply(HttpResponse.ResponseInfo responseInfo)
+        {
+            HttpResponse.BodySubscriber<T> delegate = handler.apply(responseInfo);
+            return new HttpResponse.BodySubscriber<T>()
+            {
+                @Override
+                public CompletionStage<T> getBody()
+                {
+                    return delegate.getBody();
+                }
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription)
+                {
+                    Exchange.this.subscription = subscription;
+                    delegate.onSubscribe(subscription);
+                    if (aborted) {
+                        subscription.cancel();
+                    }
+                }
+
+                @Override
+                public void onNext(List<ByteBuffer> item)
+                {
+                    delegate.onNext(item);
+                }
+
+                @Override
+                public void onError(Throwable throwable)
+                {
+                    delegate.onError(throwable);
+                }
+
+                @Override
+                public void onComplete()
+                {
+                    delegate.onComplete();
+                }
+            };
+        }
+
+        private static void closeQuietly(Closeable closeable)
+        {
+            if (closeable == null) {
+                return;
+            }
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+                // the exchange is being thrown away
+            }
+        }
+    }
+
+    // the reading side of a chunked body, a failed write ends the body with an error instead of truncating it
+    private static final class EntityPipe extends PipedInputStream
+    {
+        private volatile Exception failure;
+
+        private EntityPipe()
+        {
+            super(8192);
+        }
+
+        @Override
+        public synchronized int read() throws IOException
+        {
+            int b = super.read();
+            if (b < 0) {
+                checkFailure();
+            }
+            return b;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException
+        {
+            int n = super.read(b, off, len);
+            if (n < 0) {
+                checkFailure();
+            }
+            return n;
+        }
+
+        // unchecked, the JDK 11 publisher takes an IOException from the stream for the end of the body and sends it truncated
+        private void checkFailure()
+        {
+            Exception failure = this.failure;
+            if (failure != null) {
+                throw new UncheckedIOException(failure instanceof IOException ? (IOException) failure : new IOException(failure));
+            }
+        }
+    }
+
+    private static ProtocolVersion protocolVersion(HttpClient.Version version)
+    {
+        return version == HttpClient.Version.HTTP_2 ? new ProtocolVersion("HTTP", 2, 0) : HttpVersion.HTTP_1_1;
+    }
+}
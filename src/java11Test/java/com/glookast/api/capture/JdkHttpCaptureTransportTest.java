@@ -0,0 +1,169 @@
+package com.glookast.api.capture;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.util.EntityUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class JdkHttpCaptureTransportTest
+{
+    private final JdkHttpCaptureTransport transport = new JdkHttpCaptureTransport(HttpClient.Version.HTTP_1_1, Duration.ofSeconds(30));
+
+    @Test
+    public void abortBeforeTheResponse() throws Exception
+    {
+        CountDownLatch aborted = new CountDownLatch(1);
+        try (StubHttpServer server = new StubHttpServer().handle("channels", exchange -> trickle(exchange, 300, aborted))) {
+            HttpGet request = new HttpGet("http://localhost:" + server.getPort() + "/api/v1/channels");
+            abortLater(request, 100);
+
+            long start = System.nanoTime();
+            try {
+                transport.execute(request).close();
+                Assert.fail();
+            } catch (InterruptedIOException ignored) {
+            }
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+            // the JDK 11 client only lets go of the exchange when its body subscription is cancelled
+            Assert.assertTrue(aborted.await(3, TimeUnit.SECONDS));
+            Assert.assertEquals(0, transport.getPoolStats().getLeased());
+        }
+    }
+
+    @Test
+    public void abortWhileReadingTheBody() throws Exception
+    {
+        CountDownLatch aborted = new CountDownLatch(1);
+        try (StubHttpServer server = new StubHttpServer().handle("channels", exchange -> trickle(exchange, 0, aborted))) {
+            HttpGet request = new HttpGet("http://localhost:" + server.getPort() + "/api/v1/channels");
+            try (CloseableHttpResponse response = transport.execute(request)) {
+                abortLater(request, 100);
+                try (InputStream inputStream = response.getEntity().getContent()) {
+                    byte[] buffer = new byte[8192];
+                    while (inputStream.read(buffer) >= 0) {
+                        // keeps reading until the abort closes the body
+                    }
+                    Assert.fail();
+                } catch (IOException ignored) {
+                }
+            }
+            Assert.assertTrue(aborted.await(3, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void chunkedBodyIsStreamed() throws Exception
+    {
+        CompletableFuture<String> transferEncoding = new CompletableFuture<>();
+        CompletableFuture<String> body = new CompletableFuture<>();
+        try (StubHttpServer server = new StubHttpServer().handle("capture-jobs", exchange -> {
+            transferEncoding.complete(String.valueOf(exchange.getRequestHeaders().getFirst("Transfer-Encoding")));
+            try (InputStream inputStream = exchange.getRequestBody()) {
+                body.complete(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            StubHttpServer.respond(exchange, 204, null);
+        })) {
+            HttpPost request = new HttpPost("http://localhost:" + server.getPort() + "/api/v1/capture-jobs");
+            request.setEntity(new JsonEntity(new ObjectMapper().writer(), Collections.singletonMap("name", "job"), true));
+
+            try (CloseableHttpResponse response = transport.execute(request)) {
+                Assert.assertEquals(204, response.getStatusLine().getStatusCode());
+            }
+            Assert.assertEquals("chunked", transferEncoding.get(5, TimeUnit.SECONDS));
+            Assert.assertEquals("{\"name\":\"job\"}", body.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void chunkedBodyFailureFailsTheRequest() throws Exception
+    {
+        try (StubHttpServer server = new StubHttpServer().handle("capture-jobs", exchange -> StubHttpServer.respond(exchange, 204, null))) {
+            HttpPost request = new HttpPost("http://localhost:" + server.getPort() + "/api/v1/capture-jobs");
+            // Jackson cannot serialize a bare Object, the request must fail instead of going out with a truncated body
+            request.setEntity(new JsonEntity(new ObjectMapper().writer(), Collections.singletonMap("name", new Object()), true));
+
+            try {
+                transport.execute(request).close();
+                Assert.fail();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @Test
+    public void executeAsync() throws Exception
+    {
+        try (StubHttpServer server = new StubHttpServer().json("channels", "[{}]")) {
+            HttpGet request = new HttpGet("http://localhost:" + server.getPort() + "/api/v1/channels");
+            HttpResponse response = transport.executeAsync(request).get(5, TimeUnit.SECONDS);
+
+            Assert.assertEquals(200, response.getStatusLine().getStatusCode());
+            Assert.assertTrue(response.getEntity().isRepeatable());
+            Assert.assertEquals("[{}]", EntityUtils.toString(response.getEntity()));
+            Assert.assertEquals(0, transport.getPoolStats().getLeased());
+        }
+    }
+
+    @Test
+    public void executeAsyncAbort() throws Exception
+    {
+        CountDownLatch aborted = new CountDownLatch(1);
+        try (StubHttpServer server = new StubHttpServer().handle("channels", exchange -> trickle(exchange, 0, aborted))) {
+            HttpGet request = new HttpGet("http://localhost:" + server.getPort() + "/api/v1/channels");
+            CompletableFuture<HttpResponse> future = transport.executeAsync(request);
+            Thread.sleep(100);
+            request.abort();
+
+            try {
+                future.get(2, TimeUnit.SECONDS);
+                Assert.fail();
+            } catch (ExecutionException | CancellationException ignored) {
+            }
+            Assert.assertTrue(aborted.await(3, TimeUnit.SECONDS));
+        }
+    }
+
+    // keeps writing until the client hangs up
+    private static void trickle(HttpExchange exchange, long headerDelayMillis, CountDownLatch aborted) throws IOException
+    {
+        try {
+            Thread.sleep(headerDelayMillis);
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                for (int i = 0; i < 3000; i++) {
+                    outputStream.write(new byte[1024]);
+                    outputStream.flush();
+                    Thread.sleep(2);
+                }
+            }
+        } catch (IOException e) {
+            aborted.countDown();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void abortLater(HttpGet request, long delayMillis)
+    {
+        CallContext.schedule(request::abort, delayMillis, TimeUnit.MILLISECONDS);
+    }
+}
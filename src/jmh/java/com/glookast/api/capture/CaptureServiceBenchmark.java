@@ -0,0 +1,98 @@
+package com.glookast.api.capture;
+
+import com.glookast.commons.capture.CaptureJob;
+import com.glookast.commons.timecode.TimecodeCollection;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CaptureServiceBenchmark
+{
+    @Param({"100", "10000"})
+    private int captureJobCount;
+
+    private StubCaptureServer server;
+    private CaptureService captureService;
+
+    private CaptureJob captureJob;
+    private UUID captureJobId;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, ApiException
+    {
+        server = new StubCaptureServer(captureJobCount);
+        captureService = new CaptureService("localhost", server.getPort(), 64);
+
+        captureJobId = UUID.randomUUID();
+        captureJob = captureService.getCaptureJob(captureJobId);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        captureService.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public List<CaptureJob> getCaptureJobs() throws IOException, ApiException
+    {
+        return captureService.getCaptureJobs();
+    }
+
+    @Benchmark
+    public TimecodeCollection getTimecodes() throws IOException, ApiException
+    {
+        return captureService.getTimecodes(1);
+    }
+
+    @Benchmark
+    public CaptureJob createCaptureJob() throws IOException, ApiException
+    {
+        return captureService.createCaptureJob(captureJob);
+    }
+
+    @Benchmark
+    public byte[] getCaptureJobThumbnail() throws IOException, ApiException
+    {
+        return captureService.getCaptureJobThumbnail(captureJobId);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        String include = args.length > 0 ? args[0] : CaptureServiceBenchmark.class.getSimpleName();
+        String threadCounts = args.length > 1 ? args[1] : "1,8,32";
+        File resultDirectory = new File(args.length > 2 ? args[2] : "build/reports/jmh");
+
+        resultDirectory.mkdirs();
+
+        for (String threadCount : threadCounts.split(",")) {
+            int threads = Integer.parseInt(threadCount.trim());
+
+            Options options = new OptionsBuilder().include(include)
+                                                  .threads(threads)
+                                                  .addProfiler(GCProfiler.class)
+                                                  .resultFormat(ResultFormatType.JSON)
+                                                  .result(new File(resultDirectory, "results-" + threads + "-threads.json").getPath())
+                                                  .build();
+
+            new Runner(options).run();
+        }
+    }
+}
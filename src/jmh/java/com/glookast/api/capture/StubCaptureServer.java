@@ -0,0 +1,129 @@
+package com.glookast.api.capture;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+class StubCaptureServer
+{
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final byte[] captureJobs;
+    private final byte[] captureJob;
+    private final byte[] timecodes;
+    private final byte[] thumbnail;
+
+    StubCaptureServer(int captureJobCount) throws IOException
+    {
+        captureJobs = captureJobs(captureJobCount);
+        captureJob = payload("capture-job.json");
+        timecodes = payload("timecodes.json");
+        thumbnail = payload("thumbnail.jpg");
+
+        // avoid Nagle / delayed ACK stalls between the header and body writes of the JDK server
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/v1/", this::handle);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-capture-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    void stop()
+    {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        String path = exchange.getRequestURI().getPath().substring("/api/v1/".length());
+        String method = exchange.getRequestMethod();
+
+        byte[] requestBody = readFully(exchange.getRequestBody());
+
+        if (method.equals("GET") && path.equals("capture-jobs")) {
+            respond(exchange, 200, "application/json", captureJobs);
+        } else if (method.equals("POST") && path.equals("capture-jobs")) {
+            respond(exchange, 201, "application/json", requestBody.length > 0 ? requestBody : captureJob);
+        } else if (method.equals("GET") && path.startsWith("capture-jobs/") && path.endsWith("/thumbnail")) {
+            respond(exchange, 200, "image/jpeg", thumbnail);
+        } else if (method.equals("GET") && path.startsWith("capture-jobs/")) {
+            respond(exchange, 200, "application/json", captureJob);
+        } else if (method.equals("GET") && path.startsWith("channels/") && path.endsWith("/timecodes")) {
+            respond(exchange, 200, "application/json", timecodes);
+        } else {
+            byte[] error = ("{\"status\":404,\"error\":\"Not Found\",\"path\":\"" + path + "\"}").getBytes(StandardCharsets.UTF_8);
+            respond(exchange, 404, "application/json", error);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException
+    {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    // repeats the recorded jobs up to the requested count, each copy with its own id so nothing downstream can dedupe them
+    private static byte[] captureJobs(int count) throws IOException
+    {
+        ObjectMapper objectMapper = new ObjectMapper();
+        ArrayNode recorded = (ArrayNode) objectMapper.readTree(payload("capture-jobs.json"));
+
+        ArrayNode captureJobs = objectMapper.createArrayNode();
+        for (int i = 0; i < count; i++) {
+            ObjectNode captureJob = (ObjectNode) recorded.get(i % recorded.size()).deepCopy();
+            captureJob.put("id", new UUID(0, i).toString());
+            captureJob.put("externalId", "ingest-" + i);
+            captureJobs.add(captureJob);
+        }
+        return objectMapper.writeValueAsBytes(captureJobs);
+    }
+
+    private static byte[] payload(String name) throws IOException
+    {
+        try (InputStream inputStream = StubCaptureServer.class.getResourceAsStream("/payloads/" + name)) {
+            if (inputStream == null) {
+                throw new IOException("Missing benchmark payload '" + name + "'");
+            }
+            return readFully(inputStream);
+        }
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) >= 0) {
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+}
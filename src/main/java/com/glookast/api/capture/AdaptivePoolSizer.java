@@ -0,0 +1,62 @@
+package com.glookast.api.capture;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+class AdaptivePoolSizer
+{
+    // when even the fastest request of an interval is this much slower than the best round trip seen,
+    // the server rather than the pool is the bottleneck; slow endpoints do not skew the minimum
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double BACKOFF = 0.9;
+    private static final int MIN_LATENCY_WINDOW = 60;
+
+    private final int minConnections;
+    private final int maxConnections;
+
+    private final AtomicLong intervalMinLatency = new AtomicLong(Long.MAX_VALUE);
+
+    private double limit;
+    private long minLatency = Long.MAX_VALUE;
+    private int updates;
+
+    AdaptivePoolSizer(int minConnections, int maxConnections)
+    {
+        this.minConnections = minConnections;
+        this.maxConnections = maxConnections;
+        this.limit = minConnections;
+    }
+
+    void record(long latencyNanos)
+    {
+        intervalMinLatency.accumulateAndGet(latencyNanos, Math::min);
+    }
+
+    int getLimit()
+    {
+        return (int) limit;
+    }
+
+    synchronized int update(int leased, int pending)
+    {
+        long latency = intervalMinLatency.getAndSet(Long.MAX_VALUE);
+
+        // forget the minimum now and then so a server that became slower for good gets a new baseline
+        if (++updates >= MIN_LATENCY_WINDOW) {
+            updates = 0;
+            minLatency = Long.MAX_VALUE;
+        }
+
+        minLatency = Math.min(minLatency, latency);
+
+        if (latency != Long.MAX_VALUE && latency > minLatency * LATENCY_TOLERANCE) {
+            limit = limit * BACKOFF;
+        } else if (pending > 0) {
+            limit = limit + Math.max(1, Math.sqrt(limit));
+        } else if (leased < limit / 2) {
+            limit = limit - 1;
+        }
+
+        limit = Math.max(minConnections, Math.min(maxConnections, limit));
+        return (int) limit;
+    }
+}
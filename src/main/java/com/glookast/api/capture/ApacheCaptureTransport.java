@@ -0,0 +1,304 @@
+package com.glookast.api.capture;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@SuppressWarnings("WeakerAccess")
+public class ApacheCaptureTransport implements CaptureTransport
+{
+    private static final String REQUEST_SENT = ApacheCaptureTransport.class.getName() + ".requestSent";
+
+    private static final int PREWARM_CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final long PREWARM_RETRY_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+    private final AdaptivePoolSizer poolSizer;
+    private final ConnectionPoolConfig config;
+    private final int maxTotal;
+
+    private PoolingNHttpClientConnectionManager asyncConnectionManager;
+    private CloseableHttpAsyncClient asyncClient;
+
+    private HttpRoute prewarmRoute;
+    private int prewarmConnections;
+    private long prewarmRetryAt;
+    private volatile boolean closed;
+
+    public ApacheCaptureTransport(int maxConnections)
+    {
+        this(ConnectionPoolConfig.fixed(maxConnections));
+    }
+
+    public ApacheCaptureTransport(ConnectionPoolConfig config)
+    {
+        this(config, -1);
+    }
+
+    // a pool shared by many nodes: the config limits each route, maxTotal limits the pool as a whole
+    public ApacheCaptureTransport(ConnectionPoolConfig config, int maxTotal)
+    {
+        poolSizer = config.isAdaptive() ? new AdaptivePoolSizer(config.getMinConnections(), config.getMaxConnections()) : null;
+        int connections = poolSizer != null ? poolSizer.getLimit() : config.getMaxConnections();
+        this.config = config;
+        this.maxTotal = maxTotal;
+
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setDefaultMaxPerRoute(connections);
+        connectionManager.setMaxTotal(maxTotal > 0 ? Math.max(maxTotal, connections) : connections);
+        connectionManager.setDefaultSocketConfig(SocketConfig.custom()
+                                                             .setSoTimeout(config.getSocketTimeoutMillis())
+                                                             .setTcpNoDelay(true)
+                                                             .build());
+
+        HttpClientBuilder builder = HttpClients.custom()
+                                               .setKeepAliveStrategy(CaptureService.KEEP_ALIVE_STRATEGY)
+                                               .setConnectionManager(connectionManager)
+                                               .setDefaultRequestConfig(RequestConfig.custom()
+                                                                                     .setConnectionRequestTimeout((int) config.getLeaseTimeout(TimeUnit.MILLISECONDS))
+                                                                                     .build());
+
+        if (poolSizer != null) {
+            // measured from after the connection lease so that queueing in the pool does not count as server latency
+            builder.addInterceptorLast((HttpRequestInterceptor) (request, context) -> context.setAttribute(REQUEST_SENT, System.nanoTime()));
+            builder.addInterceptorFirst((HttpResponseInterceptor) (response, context) -> {
+                Object requestSent = context.getAttribute(REQUEST_SENT);
+                if (requestSent instanceof Long) {
+                    poolSizer.record(System.nanoTime() - (Long) requestSent);
+                }
+            });
+        }
+
+        client = builder.build();
+    }
+
+    static ApacheCaptureTransport realtime(ConnectionPoolConfig config, String hostname, int port)
+    {
+        ApacheCaptureTransport transport = new ApacheCaptureTransport(realtimeConfig(config));
+        if (config.isPrewarmRealtimeConnections()) {
+            transport.prewarmRoute = new HttpRoute(new HttpHost(hostname, port));
+            transport.prewarmConnections = config.getRealtimeConnections();
+        }
+        return transport;
+    }
+
+    static ApacheCaptureTransport realtime(ConnectionPoolConfig config, int maxTotal)
+    {
+        return new ApacheCaptureTransport(realtimeConfig(config), maxTotal);
+    }
+
+    private static ConnectionPoolConfig realtimeConfig(ConnectionPoolConfig config)
+    {
+        return ConnectionPoolConfig.fixed(config.getRealtimeConnections())
+                                   .socketTimeout(config.getSocketTimeoutMillis(), TimeUnit.MILLISECONDS)
+                                   .leaseTimeout(config.getLeaseTimeout(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CloseableHttpResponse execute(HttpUriRequest request) throws IOException
+    {
+        return client.execute(request);
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> executeAsync(HttpUriRequest request)
+    {
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+
+        Future<HttpResponse> execution;
+        try {
+            execution = asyncClient().execute(request, new FutureCallback<HttpResponse>()
+            {
+                @Override
+                public void completed(HttpResponse response)
+                {
+                    future.complete(response);
+                }
+
+                @Override
+                public void failed(Exception ex)
+                {
+                    future.completeExceptionally(ex);
+                }
+
+                @Override
+                public void cancelled()
+                {
+                    future.cancel(false);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            // the reactor refuses new exchanges once it is shutting down
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        if (request instanceof HttpRequestBase) {
+            ((HttpRequestBase) request).setCancellable(() -> execution.cancel(true));
+            if (request.isAborted()) {
+                execution.cancel(true);
+            }
+        }
+        future.whenComplete((response, throwable) -> {
+            if (future.isCancelled()) {
+                execution.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public PoolStats getPoolStats()
+    {
+        return connectionManager.getTotalStats();
+    }
+
+    public synchronized PoolStats getAsyncPoolStats()
+    {
+        return asyncConnectionManager != null ? asyncConnectionManager.getTotalStats() : new PoolStats(0, 0, 0, 0);
+    }
+
+    @Override
+    public void maintain()
+    {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(30, TimeUnit.SECONDS);
+
+        PoolingNHttpClientConnectionManager asyncConnectionManager;
+        synchronized (this) {
+            asyncConnectionManager = this.asyncConnectionManager;
+        }
+        if (asyncConnectionManager != null) {
+            asyncConnectionManager.closeExpiredConnections();
+            asyncConnectionManager.closeIdleConnections(30, TimeUnit.SECONDS);
+        }
+
+        if (prewarmRoute != null && !closed && System.nanoTime() - prewarmRetryAt >= 0) {
+            prewarm();
+        }
+
+        if (poolSizer != null) {
+            PoolStats stats = connectionManager.getTotalStats();
+            int limit = poolSizer.update(stats.getLeased(), stats.getPending());
+            if (limit != connectionManager.getDefaultMaxPerRoute()) {
+                if (maxTotal <= 0) {
+                    connectionManager.setMaxTotal(limit);
+                }
+                connectionManager.setDefaultMaxPerRoute(limit);
+            }
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        CloseableHttpAsyncClient asyncClient;
+        synchronized (this) {
+            closed = true;
+            asyncClient = this.asyncClient;
+        }
+
+        connectionManager.close();
+        if (asyncClient != null) {
+            try {
+                asyncClient.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // one reactor and pool for every AsyncCaptureService using this transport, started on first use
+    private synchronized CloseableHttpAsyncClient asyncClient() throws IOException
+    {
+        if (closed) {
+            throw new IOException("Transport is closed");
+        }
+        if (asyncClient != null) {
+            return asyncClient;
+        }
+
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                                                         .setIoThreadCount(Math.min(Runtime.getRuntime().availableProcessors(), 4))
+                                                         .setSoTimeout(config.getSocketTimeoutMillis())
+                                                         .setTcpNoDelay(true)
+                                                         .build();
+        try {
+            asyncConnectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioReactorConfig));
+        } catch (IOReactorException e) {
+            throw new IOException(e);
+        }
+        int connections = connectionManager.getDefaultMaxPerRoute();
+        asyncConnectionManager.setDefaultMaxPerRoute(connections);
+        asyncConnectionManager.setMaxTotal(maxTotal > 0 ? Math.max(maxTotal, connections) : connections);
+
+        asyncClient = HttpAsyncClients.custom()
+                                      .setKeepAliveStrategy(CaptureService.KEEP_ALIVE_STRATEGY)
+                                      .setConnectionManager(asyncConnectionManager)
+                                      .setDefaultRequestConfig(RequestConfig.custom()
+                                                                            .setConnectionRequestTimeout((int) config.getLeaseTimeout(TimeUnit.MILLISECONDS))
+                                                                            .setSocketTimeout(config.getSocketTimeoutMillis())
+                                                                            .build())
+                                      .build();
+        asyncClient.start();
+        return asyncClient;
+    }
+
+    // opens keep-alive connections up front so the first commands after an idle period skip the TCP handshake
+    private void prewarm()
+    {
+        PoolStats stats = connectionManager.getStats(prewarmRoute);
+        int missing = prewarmConnections - stats.getLeased() - stats.getAvailable();
+
+        List<HttpClientConnection> connections = new ArrayList<>();
+        try {
+            for (int i = 0; i < prewarmConnections && missing > 0; i++) {
+                HttpClientConnection connection = connectionManager.requestConnection(prewarmRoute, null).get(10, TimeUnit.MILLISECONDS);
+                connections.add(connection);
+                if (!connection.isOpen()) {
+                    HttpClientContext context = HttpClientContext.create();
+                    connectionManager.connect(connection, prewarmRoute, PREWARM_CONNECT_TIMEOUT_MILLIS, context);
+                    connectionManager.routeComplete(connection, prewarmRoute, context);
+                    missing--;
+                }
+            }
+        } catch (IOException | ExecutionException e) {
+            prewarmRetryAt = System.nanoTime() + PREWARM_RETRY_NANOS;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (HttpClientConnection connection : connections) {
+                connectionManager.releaseConnection(connection, null, 30, TimeUnit.SECONDS);
+            }
+        }
+    }
+}
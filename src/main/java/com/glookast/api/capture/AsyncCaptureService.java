@@ -0,0 +1,687 @@
+package com.glookast.api.capture;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.glookast.api.capture.CaptureService.HttpMethod;
+import com.glookast.commons.capture.*;
+import com.glookast.commons.templates.*;
+import com.glookast.commons.timecode.Timecode;
+import com.glookast.commons.timecode.TimecodeCollection;
+import com.glookast.commons.timecode.TimecodeDuration;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+// requests go through the CaptureService's caches, single-flight, breaker and retries and then
+// through its transport's non-blocking client, which all services of a CaptureClientRuntime share
+@SuppressWarnings("WeakerAccess")
+public class AsyncCaptureService
+{
+    private final CaptureService captureService;
+
+    AsyncCaptureService(CaptureService captureService)
+    {
+        this.captureService = captureService;
+    }
+
+    public CaptureService sync()
+    {
+        return captureService;
+    }
+
+    public String getHostname()
+    {
+        return captureService.getHostname();
+    }
+
+    public int getPort()
+    {
+        return captureService.getPort();
+    }
+
+    public ObjectMapper getObjectMapper()
+    {
+        return captureService.getObjectMapper();
+    }
+
+    public CompletableFuture<List<PictureFormat>> getPictureFormats()
+    {
+        return getList("picture-formats", PictureFormat.class);
+    }
+
+    public CompletableFuture<List<ContainerFormat>> getContainerFormats()
+    {
+        return getList("container-formats", ContainerFormat.class);
+    }
+
+    public CompletableFuture<List<VideoFormat>> getVideoFormats()
+    {
+        return getList("video-formats", VideoFormat.class);
+    }
+
+    public CompletableFuture<List<AudioFormat>> getAudioFormats()
+    {
+        return getList("audio-formats", AudioFormat.class);
+    }
+
+    public CompletableFuture<List<StorageSystem>> getStorageSystems()
+    {
+        return getList("storage-systems", StorageSystem.class);
+    }
+
+    public CompletableFuture<StorageSystem> getStorageSystem(UUID storageSystemId)
+    {
+        return get("storage-systems/" + storageSystemId, StorageSystem.class);
+    }
+
+    public CompletableFuture<StorageSystem> setStorageSystem(StorageSystem storageSystem)
+    {
+        if (storageSystem.getId() == null) {
+            return post("storage-systems", storageSystem, StorageSystem.class);
+        } else {
+            return put("storage-systems/" + storageSystem.getId(), storageSystem, StorageSystem.class);
+        }
+    }
+
+    public CompletableFuture<Void> deleteStorageSystem(UUID storageSystemId)
+    {
+        return delete("storage-systems/" + storageSystemId);
+    }
+
+    public CompletableFuture<SystemTestResult> testStorageSystem(StorageSystem storageSystem)
+    {
+        return post("storage-systems/test", storageSystem, SystemTestResult.class);
+    }
+
+    public CompletableFuture<SystemTestResult> testStorageSystem(UUID storageSystemId)
+    {
+        return post("storage-systems/" + storageSystemId + "/test", null, SystemTestResult.class);
+    }
+
+    public CompletableFuture<List<MetadataSystem>> getMetadataSystems()
+    {
+        return getList("metadata-systems", MetadataSystem.class);
+    }
+
+    public CompletableFuture<MetadataSystem> getMetadataSystem(UUID metadataSystemId)
+    {
+        return get("metadata-systems/" + metadataSystemId, MetadataSystem.class);
+    }
+
+    public CompletableFuture<MetadataSystem> setMetadataSystem(MetadataSystem metadataSystem)
+    {
+        if (metadataSystem.getId() == null) {
+            return post("metadata-systems", metadataSystem, MetadataSystem.class);
+        } else {
+            return put("metadata-systems/" + metadataSystem.getId(), metadataSystem, MetadataSystem.class);
+        }
+    }
+
+    public CompletableFuture<Void> deleteMetadataSystem(UUID metadataSystemId)
+    {
+        return delete("metadata-systems/" + metadataSystemId);
+    }
+
+    public CompletableFuture<SystemTestResult> testMetadataSystem(MetadataSystem metadataSystem)
+    {
+        return post("metadata-systems/test", metadataSystem, SystemTestResult.class);
+    }
+
+    public CompletableFuture<SystemTestResult> testMetadataSystem(UUID metadataSystemId)
+    {
+        return post("metadata-systems/" + metadataSystemId + "/test", null, SystemTestResult.class);
+    }
+
+    public CompletableFuture<List<OutputSystem>> getOutputSystems()
+    {
+        return getList("output-systems", OutputSystem.class);
+    }
+
+    public CompletableFuture<OutputSystem> getOutputSystem(UUID outputSystemId)
+    {
+        return get("output-systems/" + outputSystemId, OutputSystem.class);
+    }
+
+    public CompletableFuture<OutputSystem> setOutputSystem(OutputSystem outputSystem)
+    {
+        if (outputSystem.getId() == null) {
+            return post("output-systems", outputSystem, OutputSystem.class);
+        } else {
+            return put("output-systems/" + outputSystem.getId(), outputSystem, OutputSystem.class);
+        }
+    }
+
+    public CompletableFuture<Void> deleteOutputSystem(UUID outputSystemId)
+    {
+        return delete("output-systems/" + outputSystemId);
+    }
+
+    public CompletableFuture<List<TransformProfile>> getTransformProfiles()
+    {
+        return getList("transform-profiles", TransformProfile.class);
+    }
+
+    public CompletableFuture<TransformProfile> getTransformProfile(UUID transformProfileId)
+    {
+        return get("transform-profiles/" + transformProfileId, TransformProfile.class);
+    }
+
+    public CompletableFuture<TransformProfile> setTransformProfile(TransformProfile transformProfile)
+    {
+        if (transformProfile.getId() == null) {
+            return post("transform-profiles", transformProfile, TransformProfile.class);
+        } else {
+            return put("transform-profiles/" + transformProfile.getId(), transformProfile, TransformProfile.class);
+        }
+    }
+
+    public CompletableFuture<Void> deleteTransformProfile(UUID transformProfileId)
+    {
+        return delete("transform-profiles/" + transformProfileId);
+    }
+
+    public CompletableFuture<List<Template>> getTemplates()
+    {
+        return getList("templates", Template.class);
+    }
+
+    public CompletableFuture<Template> getTemplate(UUID templateId)
+    {
+        return get("templates/" + templateId, Template.class);
+    }
+
+    public CompletableFuture<Template> setTemplate(Template template)
+    {
+        if (template.getId() == null) {
+            return post("templates", template, Template.class);
+        } else {
+            return put("templates/" + template.getId(), template, Template.class);
+        }
+    }
+
+    public CompletableFuture<Void> deleteTemplate(UUID templateId)
+    {
+        return delete("templates/" + templateId);
+    }
+
+    public CompletableFuture<List<Buffer>> getBuffers()
+    {
+        return getBuffers(null);
+    }
+
+    public CompletableFuture<List<Buffer>> getBuffers(UUID templateId)
+    {
+        Map<String, Object> queryParams = new LinkedHashMap<>();
+
+        if (templateId != null) {
+            queryParams.put("templateId", templateId);
+        }
+
+        return getList("buffers", queryParams, Buffer.class);
+    }
+
+    public CompletableFuture<List<Channel>> getChannels()
+    {
+        return getList("channels", Channel.class);
+    }
+
+    public CompletableFuture<Channel> getChannel(int channelId)
+    {
+        return get("channels/" + channelId, Channel.class);
+    }
+
+    public CompletableFuture<ChannelConfiguration> getChannelConfiguration(int channelId)
+    {
+        return get("channels/" + channelId + "/config", ChannelConfiguration.class);
+    }
+
+    public CompletableFuture<Void> setChannelConfiguration(int channelId, ChannelConfiguration channelConfiguration)
+    {
+        return patch("channels/" + channelId + "/config", channelConfiguration, null);
+    }
+
+    public CompletableFuture<Void> restartChannel(int channelId)
+    {
+        return post("channels/" + channelId + "/restart", null, null);
+    }
+
+    public CompletableFuture<TimecodeCollection> getTimecodes(int channelId)
+    {
+        return get("channels/" + channelId + "/timecodes", TimecodeCollection.class);
+    }
+
+    public CompletableFuture<PlayoutStatus> getPlayoutStatus(int channelId)
+    {
+        return get("channels/" + channelId + "/playout", PlayoutStatus.class);
+    }
+
+    public CompletableFuture<PlayoutConfiguration> getPlayoutConfiguration(int channelId)
+    {
+        return get("channels/" + channelId + "/playout/config", PlayoutConfiguration.class);
+    }
+
+    public CompletableFuture<Void> setPlayoutConfiguration(int channelId, PlayoutConfiguration playoutConfiguration)
+    {
+        return patch("channels/" + channelId + "/playout/config", playoutConfiguration, null);
+    }
+
+    public CompletableFuture<Void> playoutLoad(int channelId, UUID captureJobId)
+    {
+        return post("channels/" + channelId + "/playout/load", captureJobId, null);
+    }
+
+    public CompletableFuture<Void> playoutEject(int channelId)
+    {
+        return post("channels/" + channelId + "/playout/eject", null, null);
+    }
+
+    public CompletableFuture<Void> playoutPlayLive(int channelId)
+    {
+        return playoutPlay(channelId, null);
+    }
+
+    public CompletableFuture<Void> playoutPlay(int channelId, Double playbackRate)
+    {
+        return post("channels/" + channelId + "/playout/play", playbackRate, null);
+    }
+
+    public CompletableFuture<Void> playoutPause(int channelId)
+    {
+        return post("channels/" + channelId + "/playout/pause", null, null);
+    }
+
+    public CompletableFuture<Void> playoutSeek(int channelId, long position)
+    {
+        return post("channels/" + channelId + "/playout/seek", position, null);
+    }
+
+    public CompletableFuture<Void> playoutStep(int channelId, long distance)
+    {
+        return post("channels/" + channelId + "/playout/step", distance, null);
+    }
+
+    public CompletableFuture<VTRStatus> getVTRStatus(int channelId)
+    {
+        return get("channels/" + channelId + "/vtr", VTRStatus.class);
+    }
+
+    public CompletableFuture<VTRConfiguration> getVTRConfiguration(int channelId)
+    {
+        return get("channels/" + channelId + "/vtr/config", VTRConfiguration.class);
+    }
+
+    public CompletableFuture<Void> setVTRConfiguration(int channelId, VTRConfiguration vtrConfiguration)
+    {
+        return patch("channels/" + channelId + "/vtr/config", vtrConfiguration, null);
+    }
+
+    public CompletableFuture<Void> vtrPlay(int channelId)
+    {
+        return post("channels/" + channelId + "/vtr/play", null, null);
+    }
+
+    public CompletableFuture<Void> vtrPause(int channelId)
+    {
+        return post("channels/" + channelId + "/vtr/pause", null, null);
+    }
+
+    public CompletableFuture<Void> vtrStop(int channelId)
+    {
+        return post("channels/" + channelId + "/vtr/stop", null, null);
+    }
+
+    public CompletableFuture<Void> vtrFastForward(int channelId)
+    {
+        return post("channels/" + channelId + "/vtr/fast-forward", null, null);
+    }
+
+    public CompletableFuture<Void> vtrRewind(int channelId)
+    {
+        return post("channels/" + channelId + "/vtr/rewind", null, null);
+    }
+
+    public CompletableFuture<Void> vtrEject(int channelId)
+    {
+        return post("channels/" + channelId + "/vtr/eject", null, null);
+    }
+
+    public CompletableFuture<Void> vtrShuttle(int channelId, int speed)
+    {
+        return post("channels/" + channelId + "/vtr/shuttle", speed, null);
+    }
+
+    public CompletableFuture<Void> vtrVar(int channelId, int speed)
+    {
+        return post("channels/" + channelId + "/vtr/var", speed, null);
+    }
+
+    public CompletableFuture<Void> vtrJog(int channelId, int speed)
+    {
+        return post("channels/" + channelId + "/vtr/jog", speed, null);
+    }
+
+    public CompletableFuture<Void> vtrSeek(int channelId, Timecode timecode)
+    {
+        return post("channels/" + channelId + "/vtr/seek", timecode, null);
+    }
+
+    public CompletableFuture<Void> vtrStep(int channelId, int distance)
+    {
+        return post("channels/" + channelId + "/vtr/step", distance, null);
+    }
+
+    public CompletableFuture<List<ComPort>> getComPorts()
+    {
+        return getList("com-ports", ComPort.class);
+    }
+
+    public CompletableFuture<List<CaptureJob>> getCaptureJobs()
+    {
+        return getCaptureJobs(null, null, null);
+    }
+
+    public CompletableFuture<List<CaptureJob>> getCaptureJobs(int channelId)
+    {
+        return getCaptureJobs(channelId, null, null);
+    }
+
+    public CompletableFuture<List<CaptureJob>> getCaptureJobs(String externalId)
+    {
+        return getCaptureJobs(null, externalId, null);
+    }
+
+    public CompletableFuture<List<CaptureJob>> getCaptureJobs(CaptureJobStatus captureJobStatus)
+    {
+        return getCaptureJobs(null, null, captureJobStatus);
+    }
+
+    public CompletableFuture<List<CaptureJob>> getCaptureJobs(Integer channelId, String externalId, CaptureJobStatus captureJobStatus)
+    {
+        return getList("capture-jobs", CaptureService.captureJobsQueryParams(channelId, externalId, captureJobStatus), CaptureJob.class);
+    }
+
+    public CompletableFuture<List<CaptureJob>> getCaptureJobs(CaptureJobQuery query)
+    {
+        return getList("capture-jobs", query.toQueryParams(), CaptureJob.class);
+    }
+
+    public <R> CompletableFuture<List<R>> getCaptureJobs(CaptureJobQuery query, Class<R> projection)
+    {
+        return getList("capture-jobs", query.toQueryParams(), projection);
+    }
+
+    public CompletableFuture<List<CaptureJobSummary>> getCaptureJobSummaries(CaptureJobQuery query)
+    {
+        return getList("capture-jobs", query.toQueryParams(CaptureJobSummary.FIELDS), CaptureJobSummary.class);
+    }
+
+    public CompletableFuture<CaptureJob> getCaptureJob(UUID captureJobId)
+    {
+        return get("capture-jobs/" + captureJobId, CaptureJob.class);
+    }
+
+    public CompletableFuture<CaptureJob> createCaptureJob(CaptureJob captureJob)
+    {
+        return post("capture-jobs", captureJob, CaptureJob.class);
+    }
+
+    public CompletableFuture<Void> modifyCaptureJob(UUID captureJobId, CaptureJobPriority priority)
+    {
+        return modifyCaptureJob(captureJobId, priority, null, null, null);
+    }
+
+    public CompletableFuture<Void> modifyCaptureJob(UUID captureJobId, String clipName)
+    {
+        return modifyCaptureJob(captureJobId, null, clipName, null, null);
+    }
+
+    public CompletableFuture<Void> modifyCaptureJob(UUID captureJobId, Timecode endTimecode)
+    {
+        return modifyCaptureJob(captureJobId, null, null, endTimecode, null);
+    }
+
+    public CompletableFuture<Void> modifyCaptureJob(UUID captureJobId, TimecodeDuration duration)
+    {
+        return modifyCaptureJob(captureJobId, null, null, null, duration);
+    }
+
+    public CompletableFuture<Void> modifyCaptureJob(UUID captureJobId, CaptureJobPriority priority, String clipName, Timecode endTimecode, TimecodeDuration duration)
+    {
+        Map<String, Object> modifications = new LinkedHashMap<>();
+
+        if (priority != null) {
+            modifications.put("priority", priority);
+        }
+        if (clipName != null) {
+            modifications.put("clipName", clipName);
+        }
+        if (endTimecode != null) {
+            modifications.put("endTimecode", endTimecode);
+        }
+        if (duration != null) {
+            modifications.put("duration", duration);
+        }
+
+        return patch("capture-jobs/" + captureJobId, modifications, null);
+    }
+
+    public CompletableFuture<Void> deleteCaptureJob(UUID captureJobId)
+    {
+        return delete("capture-jobs/" + captureJobId).whenComplete((ignored, throwable) -> captureService.invalidateThumbnail(captureJobId));
+    }
+
+    public CompletableFuture<List<FileCollection>> getCaptureJobFiles(UUID captureJobId)
+    {
+        return getList("capture-jobs/" + captureJobId + "/files", FileCollection.class);
+    }
+
+    public CompletableFuture<List<Locator>> getCaptureJobLocators(UUID captureJobId)
+    {
+        return getList("capture-jobs/" + captureJobId + "/locators", Locator.class);
+    }
+
+    public CompletableFuture<Void> addCaptureJobLocator(UUID captureJobId, Locator locator)
+    {
+        return post("capture-jobs/" + captureJobId + "/locators", locator, null);
+    }
+
+    public CompletableFuture<DescriptiveMetadata> getCaptureJobMetadata(UUID captureJobId)
+    {
+        return get("capture-jobs/" + captureJobId + "/metadata", DescriptiveMetadata.class);
+    }
+
+    public CompletableFuture<Void> setCaptureJobMetadata(UUID captureJobId, DescriptiveMetadata metadata)
+    {
+        return patch("capture-jobs/" + captureJobId + "/metadata", metadata, null);
+    }
+
+    public CompletableFuture<byte[]> getCaptureJobThumbnail(UUID captureJobId)
+    {
+        ThumbnailCache thumbnailCache = captureService.getThumbnailCache();
+        if (thumbnailCache == null) {
+            return get("capture-jobs/" + captureJobId + "/thumbnail", byte[].class);
+        }
+
+        ByteBuffer cached = thumbnailCache.get(captureJobId);
+        if (cached != null) {
+            byte[] thumbnail = new byte[cached.remaining()];
+            cached.get(thumbnail);
+            return CompletableFuture.completedFuture(thumbnail);
+        }
+
+        long generation = thumbnailCache.currentGeneration(captureJobId);
+        return get("capture-jobs/" + captureJobId + "/thumbnail", byte[].class).thenApply(thumbnail -> {
+            thumbnailCache.put(captureJobId, generation, thumbnail);
+            return thumbnail;
+        });
+    }
+
+    public CompletableFuture<Void> stopCaptureJob(UUID captureJobId)
+    {
+        return post("capture-jobs/" + captureJobId + "/stop", null, null);
+    }
+
+    public CompletableFuture<Void> cancelCaptureJob(UUID captureJobId)
+    {
+        return post("capture-jobs/" + captureJobId + "/cancel", null, null);
+    }
+
+    public CompletableFuture<Void> restartCaptureJob(UUID captureJobId)
+    {
+        return this.<Void, Void>post("capture-jobs/" + captureJobId + "/restart", null, null).whenComplete((ignored, throwable) -> captureService.invalidateThumbnail(captureJobId));
+    }
+
+    public CompletableFuture<List<TransferJob>> getTransferJobs()
+    {
+        return getTransferJobs(null, null);
+    }
+
+    public CompletableFuture<List<TransferJob>> getTransferJobs(Integer channelId)
+    {
+        return getTransferJobs(channelId, null);
+    }
+
+    public CompletableFuture<List<TransferJob>> getTransferJobs(UUID captureJobId)
+    {
+        return getTransferJobs(null, captureJobId);
+    }
+
+    public CompletableFuture<List<TransferJob>> getTransferJobs(Integer channelId, UUID captureJobId)
+    {
+        return getList("transfer-jobs", CaptureService.transferJobsQueryParams(channelId, captureJobId), TransferJob.class);
+    }
+
+    public CompletableFuture<TransferJob> getTransferJob(String transferJobId)
+    {
+        return get("transfer-jobs/" + transferJobId, TransferJob.class);
+    }
+
+    public CompletableFuture<Void> restartTransferJob(String transferJobId)
+    {
+        return post("transfer-jobs/" + transferJobId + "/restart", null, null);
+    }
+
+    public CompletableFuture<List<NotificationEndpoint>> getNotificationEndpoints()
+    {
+        return getList("notification-endpoints", NotificationEndpoint.class);
+    }
+
+    public CompletableFuture<NotificationEndpoint> getNotificationEndpoint(UUID notificationEndpointId)
+    {
+        return get("notification-endpoints/" + notificationEndpointId, NotificationEndpoint.class);
+    }
+
+    public CompletableFuture<NotificationEndpoint> setNotificationEndpoint(NotificationEndpoint notificationEndpoint)
+    {
+        if (notificationEndpoint.getId() == null) {
+            return post("notification-endpoints", notificationEndpoint, NotificationEndpoint.class);
+        } else {
+            return put("notification-endpoints/" + notificationEndpoint.getId(), notificationEndpoint, NotificationEndpoint.class);
+        }
+    }
+
+    public CompletableFuture<Void> deleteNotificationEndpoint(UUID notificationEndpointId)
+    {
+        return delete("notification-endpoints/" + notificationEndpointId);
+    }
+
+    public CompletableFuture<List<NamingRule>> getNamingRules()
+    {
+        return getList("naming-rules", NamingRule.class);
+    }
+
+    public CompletableFuture<NamingRule> getNamingRule(int namingRuleId)
+    {
+        return get("naming-rules/" + namingRuleId, NamingRule.class);
+    }
+
+    public CompletableFuture<NamingRule> setNamingRule(NamingRule namingRule)
+    {
+        if (namingRule.getId() == null) {
+            return post("naming-rules", namingRule, NamingRule.class);
+        } else {
+            return put("naming-rules/" + namingRule.getId(), namingRule, NamingRule.class);
+        }
+    }
+
+    public CompletableFuture<Void> deleteNamingRule(int namingRuleId)
+    {
+        return delete("naming-rules/" + namingRuleId);
+    }
+
+    public CompletableFuture<Map<String, Integer>> getNamingRulesSequences()
+    {
+        return get("naming-rules/sequences", Map.class).thenApply(AsyncCaptureService::toSequences);
+    }
+
+    public CompletableFuture<Map<String, Integer>> setNamingRulesSequences(Map<String, Integer> sequences)
+    {
+        return patch("naming-rules/sequences", sequences, Map.class).thenApply(AsyncCaptureService::toSequences);
+    }
+
+    private static Map<String, Integer> toSequences(Map<?, ?> map)
+    {
+        Map<String, Integer> result = new LinkedHashMap<>();
+
+        if (map != null) {
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                try {
+                    String key = String.valueOf(e.getKey());
+                    Integer value = Integer.valueOf(String.valueOf(e.getValue()));
+                    result.put(key, value);
+                } catch (Exception ignored) {
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private <R> CompletableFuture<List<R>> getList(String path, Class<R> responseType)
+    {
+        return method(HttpMethod.GET, path, null, null, responseType);
+    }
+
+    private <R> CompletableFuture<List<R>> getList(String path, Map<String, Object> queryParams, Class<R> responseType)
+    {
+        return method(HttpMethod.GET, path, queryParams, null, responseType);
+    }
+
+    private <R> CompletableFuture<R> get(String path, Class<R> responseType)
+    {
+        return method(HttpMethod.GET, path, null, null, responseType).thenApply(AsyncCaptureService::first);
+    }
+
+    private <T, R> CompletableFuture<R> post(String path, T requestBody, Class<R> responseType)
+    {
+        return method(HttpMethod.POST, path, null, requestBody, responseType).thenApply(AsyncCaptureService::first);
+    }
+
+    private <T, R> CompletableFuture<R> put(String path, T requestBody, Class<R> responseType)
+    {
+        return method(HttpMethod.PUT, path, null, requestBody, responseType).thenApply(AsyncCaptureService::first);
+    }
+
+    private <T, R> CompletableFuture<R> patch(String path, T requestBody, Class<R> responseType)
+    {
+        return method(HttpMethod.PATCH, path, null, requestBody, responseType).thenApply(AsyncCaptureService::first);
+    }
+
+    private CompletableFuture<Void> delete(String path)
+    {
+        return method(HttpMethod.DELETE, path, null, null, null).thenApply(list -> null);
+    }
+
+    private static <R> R first(List<R> list)
+    {
+        if (list == null || list.isEmpty()) {
+            return null;
+        }
+        return list.get(0);
+    }
+
+    private <T, R> CompletableFuture<List<R>> method(HttpMethod method, String path, Map<String, Object> queryParams, T requestBody, Class<R> responseType)
+    {
+        return captureService.methodAsync(method, path, queryParams, requestBody, responseType);
+    }
+}
@@ -0,0 +1,48 @@
+package com.glookast.api.capture;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.BufferedHttpEntity;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// CaptureTransport.executeAsync for transports that can only block
+final class BlockingExchange
+{
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "BlockingExchange");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private BlockingExchange()
+    {
+    }
+
+    static CompletableFuture<HttpResponse> submit(CaptureTransport transport, HttpUriRequest request)
+    {
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        EXECUTOR.execute(() -> {
+            try (CloseableHttpResponse response = transport.execute(request)) {
+                HttpEntity entity = response.getEntity();
+                if (entity != null) {
+                    response.setEntity(new BufferedHttpEntity(entity));
+                }
+                future.complete(response);
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        future.whenComplete((response, throwable) -> {
+            if (future.isCancelled()) {
+                request.abort();
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,231 @@
+package com.glookast.api.capture;
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Set;
+import java.util.concurrent.*;
+
+@SuppressWarnings("WeakerAccess")
+public class CallContext implements AutoCloseable
+{
+    private static final ThreadLocal<CallContext> CURRENT = new ThreadLocal<>();
+
+    private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+    private final long deadline;
+    private final Set<HttpUriRequest> requests = ConcurrentHashMap.newKeySet();
+    private final ScheduledFuture<?> timer;
+    private final Thread owner;
+    private final CallContext previous;
+
+    private volatile boolean cancelled;
+    private volatile boolean expired;
+
+    private CallContext(long deadline)
+    {
+        this.deadline = deadline;
+        this.owner = Thread.currentThread();
+        this.previous = CURRENT.get();
+
+        // socket timeouts bound each read, only the timer bounds a response that keeps trickling in
+        long delay = deadline - System.nanoTime();
+        this.timer = deadline != Long.MAX_VALUE ? TIMER.schedule(this::expire, Math.max(0, delay), TimeUnit.NANOSECONDS) : null;
+
+        CURRENT.set(this);
+    }
+
+    // calls made by this thread until close() must complete within the timeout
+    public static CallContext timeout(long timeout, TimeUnit unit)
+    {
+        return deadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    public static CallContext deadline(long deadlineNanoTime)
+    {
+        CallContext current = CURRENT.get();
+        if (current != null && current.deadline - deadlineNanoTime < 0) {
+            deadlineNanoTime = current.deadline;
+        }
+        return new CallContext(deadlineNanoTime);
+    }
+
+    // no deadline, the calls can only be aborted through cancel()
+    public static CallContext cancellable()
+    {
+        CallContext current = CURRENT.get();
+        return new CallContext(current != null ? current.deadline : Long.MAX_VALUE);
+    }
+
+    public static CallContext current()
+    {
+        return CURRENT.get();
+    }
+
+    public long getDeadline()
+    {
+        return deadline;
+    }
+
+    public boolean hasDeadline()
+    {
+        return deadline != Long.MAX_VALUE;
+    }
+
+    public long remaining(TimeUnit unit)
+    {
+        return hasDeadline() ? unit.convert(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS) : Long.MAX_VALUE;
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled || (previous != null && previous.isCancelled());
+    }
+
+    public boolean isExpired()
+    {
+        return expired || (hasDeadline() && deadline - System.nanoTime() <= 0);
+    }
+
+    // may be called from any thread, aborts whatever request is on the wire
+    public void cancel()
+    {
+        cancelled = true;
+        abortAll();
+    }
+
+    @Override
+    public void close()
+    {
+        if (timer != null) {
+            timer.cancel(false);
+        }
+        if (Thread.currentThread() == owner && CURRENT.get() == this) {
+            restore(previous);
+        }
+    }
+
+    void check() throws IOException
+    {
+        if (isCancelled()) {
+            throw new InterruptedIOException("Call cancelled");
+        }
+        if (isExpired()) {
+            expired = true;
+            throw new DeadlineExceededException("Deadline exceeded");
+        }
+    }
+
+    // the exception to report for a request that failed while this context was active
+    IOException translate(IOException e)
+    {
+        if (e instanceof DeadlineExceededException) {
+            return e;
+        }
+        if (isCancelled()) {
+            InterruptedIOException cancelled = new InterruptedIOException("Call cancelled");
+            cancelled.initCause(e);
+            return cancelled;
+        }
+        if (isExpired()) {
+            expired = true;
+            DeadlineExceededException expired = new DeadlineExceededException("Deadline exceeded");
+            expired.initCause(e);
+            return expired;
+        }
+        return e;
+    }
+
+    // enclosing contexts see the request too, so cancelling an outer context aborts nested calls
+    void register(HttpUriRequest request)
+    {
+        for (CallContext context = this; context != null; context = context.previous) {
+            context.requests.add(request);
+            if (context.cancelled || context.expired) {
+                request.abort();
+            }
+        }
+    }
+
+    void unregister(HttpUriRequest request)
+    {
+        for (CallContext context = this; context != null; context = context.previous) {
+            context.requests.remove(request);
+        }
+    }
+
+    // a copy of the future that fails with DeadlineExceededException once the deadline passes, the future itself is left alone
+    <V> CompletableFuture<V> bound(CompletableFuture<V> future)
+    {
+        if (!hasDeadline() || future.isDone()) {
+            return future;
+        }
+
+        CompletableFuture<V> bounded = new CompletableFuture<>();
+        ScheduledFuture<?> timeout = TIMER.schedule(() -> bounded.completeExceptionally(new DeadlineExceededException("Deadline exceeded")),
+                                                    remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        future.whenComplete((value, throwable) -> {
+            timeout.cancel(false);
+            if (throwable != null) {
+                bounded.completeExceptionally(throwable);
+            } else {
+                bounded.complete(value);
+            }
+        });
+        return bounded;
+    }
+
+    // for asynchronous retries, the task must only hand work off and never block
+    static ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit)
+    {
+        return TIMER.schedule(task, delay, unit);
+    }
+
+    <V> Callable<V> wrap(Callable<V> callable)
+    {
+        return () -> {
+            CallContext previous = CURRENT.get();
+            CURRENT.set(this);
+            try {
+                return callable.call();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    private void expire()
+    {
+        expired = true;
+        abortAll();
+    }
+
+    private void abortAll()
+    {
+        for (HttpUriRequest request : requests) {
+            request.abort();
+        }
+    }
+
+    // contexts are usually closed long before their deadline, so cancelled timers must not pile up in the queue
+    private static ScheduledThreadPoolExecutor createTimer()
+    {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "CallContext-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    private static void restore(CallContext previous)
+    {
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.glookast.api.capture;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.glookast.commons.capture.ApiResponseObjectMapper;
+import org.apache.http.pool.PoolStats;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@SuppressWarnings("WeakerAccess")
+public class CaptureClientRuntime
+{
+    private final ConnectionPoolConfig poolConfig;
+    private final ApacheCaptureTransport transport;
+    private final CaptureTransport realtimeTransport;
+    private final ObjectMapper objectMapper;
+    private final ScheduledExecutorService executor;
+    private final Set<CaptureService> captureServices = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean closed;
+
+    public CaptureClientRuntime(int maxConnections)
+    {
+        this(ConnectionPoolConfig.fixed(8), maxConnections);
+    }
+
+    // poolConfig limits the connections to each node, maxConnections the connections to all nodes together
+    public CaptureClientRuntime(ConnectionPoolConfig poolConfig, int maxConnections)
+    {
+        this.poolConfig = poolConfig;
+        this.transport = new ApacheCaptureTransport(poolConfig, maxConnections);
+        this.realtimeTransport = poolConfig.getRealtimeConnections() > 0 ? ApacheCaptureTransport.realtime(poolConfig, maxConnections) : transport;
+        this.objectMapper = ApiResponseObjectMapper.getMapper();
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CaptureClientRuntime-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::maintain, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public CaptureService createCaptureService(String hostname, int port)
+    {
+        if (closed) {
+            throw new IllegalStateException("CaptureClientRuntime is closed");
+        }
+
+        CaptureService captureService = new CaptureService(hostname, port, this);
+        captureServices.add(captureService);
+        return captureService;
+    }
+
+    // closes every CaptureService created by this runtime and the shared pool
+    public void close()
+    {
+        closed = true;
+        for (CaptureService captureService : captureServices) {
+            captureService.close();
+        }
+
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        transport.close();
+        if (realtimeTransport != transport) {
+            realtimeTransport.close();
+        }
+    }
+
+    public ConnectionPoolConfig getPoolConfig()
+    {
+        return poolConfig;
+    }
+
+    public ObjectMapper getObjectMapper()
+    {
+        return objectMapper;
+    }
+
+    public int getCaptureServiceCount()
+    {
+        return captureServices.size();
+    }
+
+    public PoolStats getPoolStats()
+    {
+        return transport.getPoolStats();
+    }
+
+    public PoolStats getRealtimePoolStats()
+    {
+        return realtimeTransport.getPoolStats();
+    }
+
+    // the non-blocking client behind every AsyncCaptureService, batch and cluster query of this runtime, transport commands excepted
+    public PoolStats getAsyncPoolStats()
+    {
+        return transport.getAsyncPoolStats();
+    }
+
+    CaptureTransport getTransport()
+    {
+        return transport;
+    }
+
+    CaptureTransport getRealtimeTransport()
+    {
+        return realtimeTransport;
+    }
+
+    void release(CaptureService captureService)
+    {
+        captureServices.remove(captureService);
+    }
+
+    private void maintain()
+    {
+        try {
+            transport.maintain();
+            if (realtimeTransport != transport) {
+                realtimeTransport.maintain();
+            }
+            for (CaptureService captureService : captureServices) {
+                captureService.maintain();
+            }
+        } catch (RuntimeException ignored) {
+            // a failing pass must not cancel the schedule
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.glookast.api.capture;
+
+import com.glookast.commons.capture.CaptureJob;
+import com.glookast.commons.capture.CaptureJobStatus;
+import com.glookast.commons.capture.Channel;
+import com.glookast.commons.capture.TransferJob;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+@SuppressWarnings("WeakerAccess")
+public class CaptureCluster
+{
+    private final Map<String, CaptureService> nodes = new ConcurrentSkipListMap<>();
+    private final long timeoutNanos;
+
+    public CaptureCluster(long timeout, TimeUnit unit)
+    {
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    public CaptureCluster(Collection<CaptureService> captureServices, long timeout, TimeUnit unit)
+    {
+        this(timeout, unit);
+        for (CaptureService captureService : captureServices) {
+            addNode(captureService);
+        }
+    }
+
+    public void addNode(CaptureService captureService)
+    {
+        addNode(captureService.getHostname() + ":" + captureService.getPort(), captureService);
+    }
+
+    public void addNode(String node, CaptureService captureService)
+    {
+        nodes.put(node, captureService);
+    }
+
+    public CaptureService removeNode(String node)
+    {
+        return nodes.remove(node);
+    }
+
+    public CaptureService getNode(String node)
+    {
+        return nodes.get(node);
+    }
+
+    public Map<String, CaptureService> getNodes()
+    {
+        return Collections.unmodifiableMap(nodes);
+    }
+
+    public void close()
+    {
+        for (CaptureService captureService : nodes.values()) {
+            captureService.close();
+        }
+        nodes.clear();
+    }
+
+    public ClusterResult<CaptureJob> getCaptureJobs()
+    {
+        return query(AsyncCaptureService::getCaptureJobs);
+    }
+
+    public ClusterResult<CaptureJob> getCaptureJobs(CaptureJobStatus captureJobStatus)
+    {
+        return query(node -> node.getCaptureJobs(captureJobStatus));
+    }
+
+    public ClusterResult<CaptureJob> getCaptureJobs(String externalId)
+    {
+        return query(node -> node.getCaptureJobs(externalId));
+    }
+
+    public ClusterResult<Channel> getChannels()
+    {
+        return query(AsyncCaptureService::getChannels);
+    }
+
+    public ClusterResult<TransferJob> getTransferJobs()
+    {
+        return query(AsyncCaptureService::getTransferJobs);
+    }
+
+    public ClusterResult<TransferJob> getTransferJobs(UUID captureJobId)
+    {
+        return query(node -> node.getTransferJobs(captureJobId));
+    }
+
+    public <T> ClusterResult<T> query(Function<AsyncCaptureService, CompletableFuture<List<T>>> request)
+    {
+        return query(request, timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public <T> ClusterResult<T> query(Function<AsyncCaptureService, CompletableFuture<List<T>>> request, long timeout, TimeUnit unit)
+    {
+        Map<String, CompletableFuture<List<T>>> futures = new LinkedHashMap<>();
+        Map<String, List<T>> valuesByNode = new LinkedHashMap<>();
+        Map<String, Throwable> failures = new LinkedHashMap<>();
+        Set<String> timedOut = new LinkedHashSet<>();
+
+        // every node call runs through the shared async pipeline, which aborts its exchange and stops retrying at this deadline
+        try (CallContext context = CallContext.timeout(timeout, unit)) {
+            for (Map.Entry<String, CaptureService> e : nodes.entrySet()) {
+                CompletableFuture<List<T>> future;
+                try {
+                    future = request.apply(e.getValue().async());
+                } catch (RuntimeException ex) {
+                    future = new CompletableFuture<>();
+                    future.completeExceptionally(ex);
+                }
+                futures.put(e.getKey(), future);
+            }
+
+            for (Map.Entry<String, CompletableFuture<List<T>>> e : futures.entrySet()) {
+                CompletableFuture<List<T>> future = e.getValue();
+                try {
+                    List<T> values = future.get(context.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+                    valuesByNode.put(e.getKey(), values != null ? values : Collections.emptyList());
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof DeadlineExceededException) {
+                        timedOut.add(e.getKey());
+                    } else {
+                        failures.put(e.getKey(), ex.getCause());
+                    }
+                } catch (CancellationException ex) {
+                    failures.put(e.getKey(), ex);
+                } catch (TimeoutException ex) {
+                    timedOut.add(e.getKey());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    timedOut.add(e.getKey());
+                }
+            }
+
+            if (!timedOut.isEmpty()) {
+                // the futures handed out may be derived ones, cancelling the context aborts the exchanges behind them
+                context.cancel();
+            }
+        }
+
+        return new ClusterResult<>(valuesByNode, failures, timedOut);
+    }
+}
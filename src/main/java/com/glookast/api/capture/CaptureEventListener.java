@@ -0,0 +1,29 @@
+package com.glookast.api.capture;
+
+import com.glookast.commons.capture.CaptureJob;
+import com.glookast.commons.capture.TransferJob;
+
+import java.util.UUID;
+
+public interface CaptureEventListener
+{
+    default void onCaptureJobChanged(CaptureJob captureJob)
+    {
+    }
+
+    default void onCaptureJobRemoved(UUID captureJobId)
+    {
+    }
+
+    default void onTransferJobChanged(TransferJob transferJob)
+    {
+    }
+
+    default void onTransferJobRemoved(String transferJobId)
+    {
+    }
+
+    default void onReconciled()
+    {
+    }
+}
@@ -0,0 +1,272 @@
+package com.glookast.api.capture;
+
+import com.glookast.commons.capture.ApiError;
+import com.glookast.commons.capture.CaptureJobPriority;
+import com.glookast.commons.capture.DescriptiveMetadata;
+import com.glookast.commons.timecode.Timecode;
+import com.glookast.commons.timecode.TimecodeDuration;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@SuppressWarnings("WeakerAccess")
+public class CaptureJobBatch
+{
+    private final AsyncCaptureService captureService;
+    private final List<Operation> operations = new ArrayList<>();
+    private int parallelism = 4;
+
+    CaptureJobBatch(AsyncCaptureService captureService)
+    {
+        this.captureService = captureService;
+    }
+
+    public CaptureJobBatch parallelism(int parallelism)
+    {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public CaptureJobBatch modify(UUID captureJobId, CaptureJobPriority priority)
+    {
+        return modify(captureJobId, priority, null, null, null);
+    }
+
+    public CaptureJobBatch modify(UUID captureJobId, String clipName)
+    {
+        return modify(captureJobId, null, clipName, null, null);
+    }
+
+    public CaptureJobBatch modify(UUID captureJobId, Timecode endTimecode)
+    {
+        return modify(captureJobId, null, null, endTimecode, null);
+    }
+
+    public CaptureJobBatch modify(UUID captureJobId, TimecodeDuration duration)
+    {
+        return modify(captureJobId, null, null, null, duration);
+    }
+
+    public CaptureJobBatch modify(UUID captureJobId, CaptureJobPriority priority, String clipName, Timecode endTimecode, TimecodeDuration duration)
+    {
+        return add(OperationType.MODIFY, captureJobId, s -> s.modifyCaptureJob(captureJobId, priority, clipName, endTimecode, duration));
+    }
+
+    public CaptureJobBatch stop(UUID captureJobId)
+    {
+        return add(OperationType.STOP, captureJobId, s -> s.stopCaptureJob(captureJobId));
+    }
+
+    public CaptureJobBatch cancel(UUID captureJobId)
+    {
+        return add(OperationType.CANCEL, captureJobId, s -> s.cancelCaptureJob(captureJobId));
+    }
+
+    public CaptureJobBatch delete(UUID captureJobId)
+    {
+        return add(OperationType.DELETE, captureJobId, s -> s.deleteCaptureJob(captureJobId));
+    }
+
+    public CaptureJobBatch setMetadata(UUID captureJobId, DescriptiveMetadata metadata)
+    {
+        return add(OperationType.SET_METADATA, captureJobId, s -> s.setCaptureJobMetadata(captureJobId, metadata));
+    }
+
+    public int size()
+    {
+        return operations.size();
+    }
+
+    public Report execute() throws InterruptedException
+    {
+        try {
+            return executeAsync().get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public CompletableFuture<Report> executeAsync()
+    {
+        List<Operation> operations = new ArrayList<>(this.operations);
+        Execution execution = new Execution(operations);
+
+        if (operations.isEmpty()) {
+            execution.report.complete(new Report(Collections.emptyList()));
+        }
+        for (int i = 0; i < Math.min(parallelism, operations.size()); i++) {
+            execution.run();
+        }
+
+        return execution.report;
+    }
+
+    private CaptureJobBatch add(OperationType type, UUID captureJobId, Function<AsyncCaptureService, CompletableFuture<Void>> call)
+    {
+        operations.add(new Operation(type, captureJobId, call));
+        return this;
+    }
+
+    private class Execution
+    {
+        private final List<Operation> operations;
+        private final Result[] results;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final CompletableFuture<Report> report = new CompletableFuture<>();
+
+        private Execution(List<Operation> operations)
+        {
+            this.operations = operations;
+            this.results = new Result[operations.size()];
+            this.remaining = new AtomicInteger(operations.size());
+        }
+
+        // one of the parallel lanes; operations that complete while being submitted (cache hits, failed
+        // futures, a closed transport) are picked up by the loop instead of recursing from the callback
+        private void run()
+        {
+            for (int index = next.getAndIncrement(); index < operations.size(); index = next.getAndIncrement()) {
+                Operation operation = operations.get(index);
+
+                CompletableFuture<Void> future;
+                try {
+                    future = operation.call.apply(captureService);
+                } catch (RuntimeException e) {
+                    future = new CompletableFuture<>();
+                    future.completeExceptionally(e);
+                }
+
+                // whoever flips the flag second continues the lane: this loop if the future was already done, the callback otherwise
+                AtomicBoolean submitting = new AtomicBoolean(true);
+                int completed = index;
+                future.whenComplete((ignored, throwable) -> {
+                    complete(completed, operation, throwable);
+                    if (!submitting.compareAndSet(true, false)) {
+                        run();
+                    }
+                });
+                if (submitting.compareAndSet(true, false)) {
+                    return;
+                }
+            }
+        }
+
+        private void complete(int index, Operation operation, Throwable throwable)
+        {
+            results[index] = new Result(operation.type, operation.captureJobId, unwrap(throwable));
+            if (remaining.decrementAndGet() == 0) {
+                report.complete(new Report(Arrays.asList(results)));
+            }
+        }
+
+        private Throwable unwrap(Throwable throwable)
+        {
+            while (throwable instanceof CompletionException && throwable.getCause() != null) {
+                throwable = throwable.getCause();
+            }
+            return throwable;
+        }
+    }
+
+    private static class Operation
+    {
+        private final OperationType type;
+        private final UUID captureJobId;
+        private final Function<AsyncCaptureService, CompletableFuture<Void>> call;
+
+        private Operation(OperationType type, UUID captureJobId, Function<AsyncCaptureService, CompletableFuture<Void>> call)
+        {
+            this.type = type;
+            this.captureJobId = captureJobId;
+            this.call = call;
+        }
+    }
+
+    public enum OperationType
+    {
+        MODIFY,
+        STOP,
+        CANCEL,
+        DELETE,
+        SET_METADATA
+    }
+
+    public static class Result
+    {
+        private final OperationType operationType;
+        private final UUID captureJobId;
+        private final Throwable error;
+
+        Result(OperationType operationType, UUID captureJobId, Throwable error)
+        {
+            this.operationType = operationType;
+            this.captureJobId = captureJobId;
+            this.error = error;
+        }
+
+        public OperationType getOperationType()
+        {
+            return operationType;
+        }
+
+        public UUID getCaptureJobId()
+        {
+            return captureJobId;
+        }
+
+        public boolean isSuccessful()
+        {
+            return error == null;
+        }
+
+        public Throwable getError()
+        {
+            return error;
+        }
+
+        public ApiError getApiError()
+        {
+            return error instanceof ApiException ? ((ApiException) error).getApiError() : null;
+        }
+    }
+
+    public static class Report
+    {
+        private final List<Result> results;
+
+        Report(List<Result> results)
+        {
+            this.results = Collections.unmodifiableList(results);
+        }
+
+        public List<Result> getResults()
+        {
+            return results;
+        }
+
+        public List<Result> getSucceeded()
+        {
+            return results.stream().filter(Result::isSuccessful).collect(Collectors.toList());
+        }
+
+        public List<Result> getFailed()
+        {
+            return results.stream().filter(result -> !result.isSuccessful()).collect(Collectors.toList());
+        }
+
+        public boolean isSuccessful()
+        {
+            return results.stream().allMatch(Result::isSuccessful);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.glookast.api.capture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.glookast.commons.capture.CaptureJob;
+import com.glookast.commons.capture.CaptureJobStatus;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
+
+@SuppressWarnings("WeakerAccess")
+public class CaptureJobIndex implements CaptureEventListener
+{
+    private final CaptureService captureService;
+    private final long reconcileIntervalMillis;
+    private final ScheduledExecutorService executor;
+
+    private final Map<UUID, Entry> captureJobs = new ConcurrentHashMap<>();
+    private final Map<String, Set<UUID>> byExternalId = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<UUID>> byChannelId = new ConcurrentHashMap<>();
+    private final Map<CaptureJobStatus, Set<UUID>> byStatus = new ConcurrentHashMap<>();
+    private final Map<UUID, Long> removed = new HashMap<>();
+
+    private final LongAdder reconcileFailures = new LongAdder();
+
+    private volatile long version;
+    private volatile long reconciledAt;
+    private boolean started;
+
+    public CaptureJobIndex(CaptureService captureService)
+    {
+        this(captureService, 5, TimeUnit.MINUTES);
+    }
+
+    public CaptureJobIndex(CaptureService captureService, long reconcileInterval, TimeUnit unit)
+    {
+        this.captureService = captureService;
+        this.reconcileIntervalMillis = unit.toMillis(reconcileInterval);
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CaptureJobIndex-" + captureService.getHostname());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public synchronized void start() throws IOException, ApiException
+    {
+        if (started) {
+            throw new IllegalStateException("CaptureJobIndex already started");
+        }
+        started = true;
+
+        reconcile();
+
+        if (reconcileIntervalMillis > 0) {
+            executor.scheduleWithFixedDelay(() -> {
+                try {
+                    reconcile();
+                } catch (IOException | ApiException | RuntimeException e) {
+                    reconcileFailures.increment();
+                }
+            }, reconcileIntervalMillis, reconcileIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void close()
+    {
+        executor.shutdownNow();
+    }
+
+    // bumped on every change that is applied, equal versions mean identical contents
+    public long getVersion()
+    {
+        return version;
+    }
+
+    public long getReconciledAt()
+    {
+        return reconciledAt;
+    }
+
+    public long getReconcileFailureCount()
+    {
+        return reconcileFailures.sum();
+    }
+
+    public int size()
+    {
+        return captureJobs.size();
+    }
+
+    // every getter decodes fresh copies, so callers can neither change the index nor see a job change underneath them
+    public CaptureJob getCaptureJob(UUID captureJobId)
+    {
+        Entry entry = captureJobs.get(captureJobId);
+        return entry != null ? copy(entry) : null;
+    }
+
+    public List<CaptureJob> getCaptureJobs()
+    {
+        return getCaptureJobs(null, null, null);
+    }
+
+    public List<CaptureJob> getCaptureJobs(int channelId)
+    {
+        return getCaptureJobs(channelId, null, null);
+    }
+
+    public List<CaptureJob> getCaptureJobs(String externalId)
+    {
+        return getCaptureJobs(null, externalId, null);
+    }
+
+    public List<CaptureJob> getCaptureJobs(CaptureJobStatus captureJobStatus)
+    {
+        return getCaptureJobs(null, null, captureJobStatus);
+    }
+
+    public List<CaptureJob> getCaptureJobs(Integer channelId, String externalId, CaptureJobStatus captureJobStatus)
+    {
+        Collection<UUID> candidates = null;
+        if (externalId != null) {
+            candidates = smallest(candidates, byExternalId.get(externalId));
+        }
+        if (channelId != null) {
+            candidates = smallest(candidates, byChannelId.get(channelId));
+        }
+        if (captureJobStatus != null) {
+            candidates = smallest(candidates, byStatus.get(captureJobStatus));
+        }
+
+        List<CaptureJob> result = new ArrayList<>();
+        if (candidates == null) {
+            for (Entry entry : captureJobs.values()) {
+                result.add(copy(entry));
+            }
+            return result;
+        }
+
+        for (UUID captureJobId : candidates) {
+            Entry entry = captureJobs.get(captureJobId);
+            if (entry != null && matches(entry.captureJob, channelId, externalId, captureJobStatus)) {
+                result.add(copy(entry));
+            }
+        }
+        return result;
+    }
+
+    public void refresh(UUID captureJobId) throws IOException, ApiException
+    {
+        long since = version;
+        try {
+            CaptureJob captureJob = captureService.getCaptureJob(captureJobId);
+            if (captureJob != null) {
+                apply(captureJob, since);
+            }
+        } catch (ApiException e) {
+            if (e.getApiError().getStatus() != HTTP_NOT_FOUND) {
+                throw e;
+            }
+            remove(captureJobId, since);
+        }
+    }
+
+    public void reconcile() throws IOException, ApiException
+    {
+        long since = version;
+
+        Set<UUID> captureJobIds = new HashSet<>();
+        try (Stream<CaptureJob> stream = captureService.streamCaptureJobs()) {
+            stream.forEach(captureJob -> {
+                if (captureJob.getId() != null) {
+                    captureJobIds.add(captureJob.getId());
+                    apply(captureJob, since);
+                }
+            });
+        }
+
+        synchronized (this) {
+            for (Entry entry : new ArrayList<>(captureJobs.values())) {
+                UUID captureJobId = entry.captureJob.getId();
+                if (!captureJobIds.contains(captureJobId)) {
+                    remove(captureJobId, since);
+                }
+            }
+            removed.values().removeIf(removedAt -> removedAt <= since);
+        }
+
+        reconciledAt = System.currentTimeMillis();
+    }
+
+    @Override
+    public void onCaptureJobChanged(CaptureJob captureJob)
+    {
+        apply(captureJob, Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onCaptureJobRemoved(UUID captureJobId)
+    {
+        remove(captureJobId, Long.MAX_VALUE);
+    }
+
+    // state fetched at version 'since' must not overwrite a change that was pushed while it was in flight
+    private synchronized void apply(CaptureJob captureJob, long since)
+    {
+        UUID captureJobId = captureJob.getId();
+        if (captureJobId == null) {
+            return;
+        }
+
+        Entry previous = captureJobs.get(captureJobId);
+        if (previous != null ? previous.version > since : removed.getOrDefault(captureJobId, -1L) > since) {
+            return;
+        }
+        // the index keeps its own copy, the caller's instance may be handed to other listeners and changed later
+        ObjectMapper objectMapper = captureService.getObjectMapper();
+        JsonNode state = objectMapper.valueToTree(captureJob);
+        if (previous != null && previous.state.equals(state)) {
+            return;
+        }
+
+        long version = this.version + 1;
+        removed.remove(captureJobId);
+        captureJob = objectMapper.convertValue(state, CaptureJob.class);
+        captureJobs.put(captureJobId, new Entry(captureJob, state, version));
+
+        CaptureJob old = previous != null ? previous.captureJob : null;
+        reindex(byExternalId, captureJobId, old != null ? old.getExternalId() : null, captureJob.getExternalId());
+        reindex(byChannelId, captureJobId, old != null ? old.getChannelId() : null, captureJob.getChannelId());
+        reindex(byStatus, captureJobId, old != null ? old.getStatus() : null, captureJob.getStatus());
+
+        this.version = version;
+    }
+
+    private synchronized void remove(UUID captureJobId, long since)
+    {
+        Entry previous = captureJobs.get(captureJobId);
+        if (previous == null) {
+            // pushed removal of a job a running reconcile may still list
+            if (since == Long.MAX_VALUE) {
+                removed.put(captureJobId, ++version);
+            }
+            return;
+        }
+        if (previous.version > since) {
+            return;
+        }
+
+        long version = this.version + 1;
+        captureJobs.remove(captureJobId);
+        removed.put(captureJobId, version);
+
+        reindex(byExternalId, captureJobId, previous.captureJob.getExternalId(), null);
+        reindex(byChannelId, captureJobId, previous.captureJob.getChannelId(), null);
+        reindex(byStatus, captureJobId, previous.captureJob.getStatus(), null);
+
+        this.version = version;
+    }
+
+    private CaptureJob copy(Entry entry)
+    {
+        return captureService.getObjectMapper().convertValue(entry.state, CaptureJob.class);
+    }
+
+    private static <K> void reindex(Map<K, Set<UUID>> index, UUID captureJobId, K oldKey, K newKey)
+    {
+        if (Objects.equals(oldKey, newKey)) {
+            return;
+        }
+        if (oldKey != null) {
+            index.computeIfPresent(oldKey, (key, captureJobIds) -> {
+                captureJobIds.remove(captureJobId);
+                return captureJobIds.isEmpty() ? null : captureJobIds;
+            });
+        }
+        if (newKey != null) {
+            index.computeIfAbsent(newKey, key -> ConcurrentHashMap.newKeySet()).add(captureJobId);
+        }
+    }
+
+    private static Collection<UUID> smallest(Collection<UUID> current, Set<UUID> candidates)
+    {
+        if (candidates == null) {
+            return Collections.emptySet();
+        }
+        return current == null || candidates.size() < current.size() ? candidates : current;
+    }
+
+    private static boolean matches(CaptureJob captureJob, Integer channelId, String externalId, CaptureJobStatus captureJobStatus)
+    {
+        return (channelId == null || channelId.equals(captureJob.getChannelId())) &&
+               (externalId == null || externalId.equals(captureJob.getExternalId())) &&
+               (captureJobStatus == null || captureJobStatus.equals(captureJob.getStatus()));
+    }
+
+    private static class Entry
+    {
+        private final CaptureJob captureJob;
+        private final JsonNode state;
+        private final long version;
+
+        private Entry(CaptureJob captureJob, JsonNode state, long version)
+        {
+            this.captureJob = captureJob;
+            this.state = state;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.glookast.api.capture;
+
+import com.glookast.commons.capture.CaptureJob;
+import com.glookast.commons.capture.CaptureJobPriority;
+import com.glookast.commons.capture.CaptureJobStatus;
+
+import java.time.Instant;
+import java.util.*;
+
+// the capture server is only known to filter on channelId, externalId and status. The other parameters are sent as they are and a server that
+// does not know them ignores them, so nextPage checks every page it is handed instead of trusting limit and offset
+@SuppressWarnings("WeakerAccess")
+public class CaptureJobQuery
+{
+    private Integer channelId;
+    private String externalId;
+    private CaptureJobStatus status;
+    private CaptureJobPriority priority;
+    private UUID templateId;
+    private Instant startedAfter;
+    private Instant startedBefore;
+    private Integer limit;
+    private Integer offset;
+    private String sort;
+    private List<String> fields;
+    private List<Object> previousPage;
+
+    public CaptureJobQuery()
+    {
+    }
+
+    private CaptureJobQuery(CaptureJobQuery query)
+    {
+        this.channelId = query.channelId;
+        this.externalId = query.externalId;
+        this.status = query.status;
+        this.priority = query.priority;
+        this.templateId = query.templateId;
+        this.startedAfter = query.startedAfter;
+        this.startedBefore = query.startedBefore;
+        this.limit = query.limit;
+        this.offset = query.offset;
+        this.sort = query.sort;
+        this.fields = query.fields;
+    }
+
+    public CaptureJobQuery channelId(Integer channelId)
+    {
+        this.channelId = channelId;
+        return this;
+    }
+
+    public CaptureJobQuery externalId(String externalId)
+    {
+        this.externalId = externalId;
+        return this;
+    }
+
+    public CaptureJobQuery status(CaptureJobStatus status)
+    {
+        this.status = status;
+        return this;
+    }
+
+    public CaptureJobQuery priority(CaptureJobPriority priority)
+    {
+        this.priority = priority;
+        return this;
+    }
+
+    public CaptureJobQuery templateId(UUID templateId)
+    {
+        this.templateId = templateId;
+        return this;
+    }
+
+    public CaptureJobQuery startedAfter(Instant startedAfter)
+    {
+        this.startedAfter = startedAfter;
+        return this;
+    }
+
+    public CaptureJobQuery startedBefore(Instant startedBefore)
+    {
+        this.startedBefore = startedBefore;
+        return this;
+    }
+
+    public CaptureJobQuery limit(int limit)
+    {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    public CaptureJobQuery offset(int offset)
+    {
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset must not be negative");
+        }
+        this.offset = offset;
+        return this;
+    }
+
+    public CaptureJobQuery sortBy(String field)
+    {
+        return sortBy(field, false);
+    }
+
+    public CaptureJobQuery sortBy(String field, boolean descending)
+    {
+        this.sort = field != null ? (descending ? "-" : "") + field : null;
+        return this;
+    }
+
+    public CaptureJobQuery fields(String... fields)
+    {
+        this.fields = fields != null && fields.length > 0 ? Collections.unmodifiableList(Arrays.asList(fields.clone())) : null;
+        return this;
+    }
+
+    public Integer getLimit()
+    {
+        return limit;
+    }
+
+    public Integer getOffset()
+    {
+        return offset;
+    }
+
+    public List<String> getFields()
+    {
+        return fields != null ? fields : Collections.emptyList();
+    }
+
+    // the same query moved on past the page it returned, or null when that page was the last one
+    public CaptureJobQuery nextPage(List<?> page)
+    {
+        if (limit == null) {
+            throw new IllegalStateException("nextPage requires a limit");
+        }
+        if (page.size() > limit) {
+            throw new IllegalStateException("Server returned " + page.size() + " capture jobs for a limit of " + limit + ", it does not page capture jobs");
+        }
+
+        List<Object> keys = new ArrayList<>(page.size());
+        for (Object job : page) {
+            keys.add(key(job));
+        }
+        if (!keys.isEmpty() && keys.equals(previousPage)) {
+            throw new IllegalStateException("Server returned the same capture jobs for offset " + offset + ", it does not page capture jobs");
+        }
+        if (page.size() < limit) {
+            return null;
+        }
+
+        CaptureJobQuery next = new CaptureJobQuery(this).offset((offset != null ? offset : 0) + limit);
+        next.previousPage = keys;
+        return next;
+    }
+
+    private static Object key(Object job)
+    {
+        if (job instanceof CaptureJob) {
+            return ((CaptureJob) job).getId();
+        }
+        if (job instanceof CaptureJobSummary) {
+            return ((CaptureJobSummary) job).getId();
+        }
+        return job;
+    }
+
+    Map<String, Object> toQueryParams(String... defaultFields)
+    {
+        Map<String, Object> queryParams = new LinkedHashMap<>();
+
+        put(queryParams, "channelId", channelId);
+        put(queryParams, "externalId", externalId);
+        put(queryParams, "status", status);
+        put(queryParams, "priority", priority);
+        put(queryParams, "templateId", templateId);
+        put(queryParams, "startedAfter", startedAfter);
+        put(queryParams, "startedBefore", startedBefore);
+        put(queryParams, "limit", limit);
+        put(queryParams, "offset", offset);
+        put(queryParams, "sort", sort);
+
+        List<String> fields = this.fields != null ? this.fields : Arrays.asList(defaultFields);
+        if (!fields.isEmpty()) {
+            queryParams.put("fields", String.join(",", fields));
+        }
+
+        return queryParams;
+    }
+
+    private static void put(Map<String, Object> queryParams, String name, Object value)
+    {
+        if (value != null) {
+            queryParams.put(name, value);
+        }
+    }
+}
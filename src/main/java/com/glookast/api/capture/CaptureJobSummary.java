@@ -0,0 +1,38 @@
+package com.glookast.api.capture;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.glookast.commons.capture.CaptureJobStatus;
+
+import java.util.UUID;
+
+@SuppressWarnings("WeakerAccess")
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class CaptureJobSummary
+{
+    static final String[] FIELDS = { "id", "clipName", "status" };
+
+    private UUID id;
+    private String clipName;
+    private CaptureJobStatus status;
+
+    public UUID getId()
+    {
+        return id;
+    }
+
+    public String getClipName()
+    {
+        return clipName;
+    }
+
+    public CaptureJobStatus getStatus()
+    {
+        return status;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CaptureJobSummary{id=" + id + ", clipName=" + clipName + ", status=" + status + "}";
+    }
+}
@@ -1,8 +1,13 @@
 package com.glookast.api.capture;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.util.StdDateFormat;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -12,41 +17,98 @@ import com.glookast.commons.timecode.Timecode;
 import com.glookast.commons.timecode.TimecodeCollection;
 import com.glookast.commons.timecode.TimecodeDuration;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.TeeOutputStream;
 import org.apache.http.HeaderElement;
 import org.apache.http.HeaderElementIterator;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.*;
-import org.apache.http.config.SocketConfig;
 import org.apache.http.conn.ConnectionKeepAliveStrategy;
-import org.apache.http.conn.HttpClientConnectionManager;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.protocol.HTTP;
+import org.apache.http.util.EntityUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.time.OffsetDateTime;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.net.HttpURLConnection.*;
 
 @SuppressWarnings("WeakerAccess")
 public class CaptureService
 {
+    static final ConnectionKeepAliveStrategy KEEP_ALIVE_STRATEGY = (response, context) -> {
+        HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+        while (it.hasNext()) {
+            HeaderElement he = it.nextElement();
+            String param = he.getName();
+            String value = he.getValue();
+            if (value != null && param.equalsIgnoreCase
+                ("timeout")) {
+                return Long.parseLong(value) * 1000;
+            }
+        }
+        return 30 * 1000;
+    };
+
+    private static final long SLOW_LANE_POLL_MILLIS = 10;
+
+    // frame accurate operator actions that get their own connections so they never queue behind bulk traffic
+    private static final Pattern REALTIME_PATH = Pattern.compile("channels/\\d+/(playout/(play|pause|seek|step)|vtr/(play|pause|stop|fast-forward|rewind|shuttle|var|jog|seek|step))");
+
     private final String hostname;
     private final int port;
 
     private final String restEndpoint;
     private final ObjectMapper objectMapper;
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
 
-    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CaptureTransport transport;
+    private final CaptureTransport realtimeTransport;
+    private final CaptureClientRuntime runtime;
     private final IdleConnectionMonitorThread staleMonitor;
-    private final CloseableHttpClient client;
+    private final Semaphore slowLane;
+    private final long leaseTimeoutMillis;
+    private final int socketTimeoutMillis;
+
+    private AsyncCaptureService asyncCaptureService;
+    private volatile ConnectionLeakDetector leakDetector;
+    private volatile CaptureServiceMetrics metrics;
+    private volatile CatalogCache catalogCache;
+    private volatile ConditionalRequestCache conditionalRequestCache;
+    private volatile ThumbnailCache thumbnailCache;
+    private volatile boolean singleFlight;
+    private volatile boolean chunkedRequests;
+    private final Map<String, Flight> inFlightGets = new ConcurrentHashMap<>();
+    private final LongAdder sharedGets = new LongAdder();
+    private volatile ResiliencePolicy resiliencePolicy;
+    private volatile CircuitBreaker circuitBreaker;
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private ExecutorService hedgeExecutor;
 
     public CaptureService(String hostname, int port)
     {
@@ -54,46 +116,207 @@ public class CaptureService
     }
 
     public CaptureService(String hostname, int port, int maxConnections)
+    {
+        this(hostname, port, ConnectionPoolConfig.fixed(maxConnections));
+    }
+
+    public CaptureService(String hostname, int port, ConnectionPoolConfig poolConfig)
+    {
+        this(hostname, port, poolConfig, new ApacheCaptureTransport(poolConfig),
+             poolConfig.getRealtimeConnections() > 0 ? ApacheCaptureTransport.realtime(poolConfig, hostname, port) : null, null);
+    }
+
+    public CaptureService(String hostname, int port, CaptureTransport transport)
+    {
+        this(hostname, port, ConnectionPoolConfig.fixed(8), transport, null, null);
+    }
+
+    // pool, maintenance thread and ObjectMapper belong to the runtime, see CaptureClientRuntime.createCaptureService
+    CaptureService(String hostname, int port, CaptureClientRuntime runtime)
+    {
+        this(hostname, port, runtime.getPoolConfig(), runtime.getTransport(), runtime.getRealtimeTransport(), runtime);
+    }
+
+    private CaptureService(String hostname, int port, ConnectionPoolConfig poolConfig, CaptureTransport transport, CaptureTransport realtimeTransport,
+                           CaptureClientRuntime runtime)
     {
         this.hostname = hostname;
         this.port = port;
+        this.slowLane = new Semaphore(poolConfig.getSlowLaneConnections(), true);
+        this.leaseTimeoutMillis = poolConfig.getLeaseTimeout(TimeUnit.MILLISECONDS);
+        this.socketTimeoutMillis = poolConfig.getSocketTimeoutMillis();
 
         this.restEndpoint = "http://" + hostname + ":" + port + "/api/v1/";
 
-        this.objectMapper = ApiResponseObjectMapper.getMapper();
-
-        connectionManager = new PoolingHttpClientConnectionManager();
-        connectionManager.setDefaultMaxPerRoute(maxConnections);
-        connectionManager.setMaxTotal(maxConnections);
-        connectionManager.setDefaultSocketConfig(SocketConfig.custom().setSoTimeout(5000).build());
-
-        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
-            HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
-            while (it.hasNext()) {
-                HeaderElement he = it.nextElement();
-                String param = he.getName();
-                String value = he.getValue();
-                if (value != null && param.equalsIgnoreCase
-                    ("timeout")) {
-                    return Long.parseLong(value) * 1000;
-                }
-            }
-            return 30 * 1000;
-        };
+        this.objectMapper = runtime != null ? runtime.getObjectMapper() : ApiResponseObjectMapper.getMapper();
 
-        client = HttpClients.custom()
-                            .setKeepAliveStrategy(keepAliveStrategy)
-                            .setConnectionManager(connectionManager)
-                            .build();
+        this.transport = transport;
+        this.realtimeTransport = realtimeTransport != null ? realtimeTransport : transport;
+        this.runtime = runtime;
 
-        staleMonitor = new IdleConnectionMonitorThread(connectionManager);
-        staleMonitor.start();
+        if (runtime == null) {
+            staleMonitor = new IdleConnectionMonitorThread(this.transport, this.realtimeTransport);
+            staleMonitor.start();
+        } else {
+            staleMonitor = null;
+        }
     }
 
     public void close()
     {
-        connectionManager.close();
+        synchronized (this) {
+            if (hedgeExecutor != null) {
+                hedgeExecutor.shutdownNow();
+            }
+        }
+
+        if (runtime != null) {
+            runtime.release(this);
+            return;
+        }
+
         staleMonitor.shutdown();
+        transport.close();
+        if (realtimeTransport != transport) {
+            realtimeTransport.close();
+        }
+    }
+
+    public CaptureClientRuntime getRuntime()
+    {
+        return runtime;
+    }
+
+    public CaptureJobBatch batch()
+    {
+        return new CaptureJobBatch(async());
+    }
+
+    public ConnectionLeakDetector getConnectionLeakDetector()
+    {
+        return leakDetector;
+    }
+
+    public void setConnectionLeakDetector(ConnectionLeakDetector leakDetector)
+    {
+        this.leakDetector = leakDetector;
+    }
+
+    public CaptureServiceMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    public void setMetrics(CaptureServiceMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    public CatalogCache getCatalogCache()
+    {
+        return catalogCache;
+    }
+
+    // cached catalog lists come back unmodifiable and shared between callers, their elements must be treated as read-only
+    public void setCatalogCache(CatalogCache catalogCache)
+    {
+        this.catalogCache = catalogCache;
+    }
+
+    public ConditionalRequestCache getConditionalRequestCache()
+    {
+        return conditionalRequestCache;
+    }
+
+    // lists of the cached resources come back unmodifiable and shared between callers, their elements must be treated as read-only
+    public void setConditionalRequestCache(ConditionalRequestCache conditionalRequestCache)
+    {
+        this.conditionalRequestCache = conditionalRequestCache;
+    }
+
+    public ThumbnailCache getThumbnailCache()
+    {
+        return thumbnailCache;
+    }
+
+    public void setThumbnailCache(ThumbnailCache thumbnailCache)
+    {
+        this.thumbnailCache = thumbnailCache;
+    }
+
+    public boolean isSingleFlight()
+    {
+        return singleFlight;
+    }
+
+    public void setSingleFlight(boolean singleFlight)
+    {
+        this.singleFlight = singleFlight;
+    }
+
+    public boolean isChunkedRequests()
+    {
+        return chunkedRequests;
+    }
+
+    // streams request bodies with chunked transfer encoding instead of buffering them for a Content-Length
+    public void setChunkedRequests(boolean chunkedRequests)
+    {
+        this.chunkedRequests = chunkedRequests;
+    }
+
+    public long getSharedGetCount()
+    {
+        return sharedGets.sum();
+    }
+
+    public ResiliencePolicy getResiliencePolicy()
+    {
+        return resiliencePolicy;
+    }
+
+    public synchronized void setResiliencePolicy(ResiliencePolicy resiliencePolicy)
+    {
+        this.circuitBreaker = resiliencePolicy != null ? new CircuitBreaker(resiliencePolicy.getFailureThreshold(), resiliencePolicy.getOpenDuration(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS) : null;
+        this.resiliencePolicy = resiliencePolicy;
+    }
+
+    public CircuitBreaker getCircuitBreaker()
+    {
+        return circuitBreaker;
+    }
+
+    public long getRetryCount()
+    {
+        return retries.sum();
+    }
+
+    public long getHedgeCount()
+    {
+        return hedges.sum();
+    }
+
+    public PoolStats getPoolStats()
+    {
+        return transport.getPoolStats();
+    }
+
+    public PoolStats getRealtimePoolStats()
+    {
+        return realtimeTransport.getPoolStats();
+    }
+
+    public CaptureTransport getTransport()
+    {
+        return transport;
+    }
+
+    public synchronized AsyncCaptureService async()
+    {
+        if (asyncCaptureService == null) {
+            asyncCaptureService = new AsyncCaptureService(this);
+        }
+        return asyncCaptureService;
     }
 
     public String getHostname()
@@ -463,6 +686,66 @@ public class CaptureService
     }
 
     public List<CaptureJob> getCaptureJobs(Integer channelId, String externalId, CaptureJobStatus captureJobStatus) throws IOException, ApiException
+    {
+        return getList("capture-jobs", captureJobsQueryParams(channelId, externalId, captureJobStatus), CaptureJob.class);
+    }
+
+    public Stream<CaptureJob> streamCaptureJobs() throws IOException, ApiException
+    {
+        return streamCaptureJobs(null, null, null);
+    }
+
+    public Stream<CaptureJob> streamCaptureJobs(int channelId) throws IOException, ApiException
+    {
+        return streamCaptureJobs(channelId, null, null);
+    }
+
+    public Stream<CaptureJob> streamCaptureJobs(String externalId) throws IOException, ApiException
+    {
+        return streamCaptureJobs(null, externalId, null);
+    }
+
+    public Stream<CaptureJob> streamCaptureJobs(CaptureJobStatus captureJobStatus) throws IOException, ApiException
+    {
+        return streamCaptureJobs(null, null, captureJobStatus);
+    }
+
+    public Stream<CaptureJob> streamCaptureJobs(Integer channelId, String externalId, CaptureJobStatus captureJobStatus) throws IOException, ApiException
+    {
+        return streamList("capture-jobs", captureJobsQueryParams(channelId, externalId, captureJobStatus), CaptureJob.class);
+    }
+
+    public List<CaptureJob> getCaptureJobs(CaptureJobQuery query) throws IOException, ApiException
+    {
+        return getList("capture-jobs", query.toQueryParams(), CaptureJob.class);
+    }
+
+    public <R> List<R> getCaptureJobs(CaptureJobQuery query, Class<R> projection) throws IOException, ApiException
+    {
+        return getList("capture-jobs", query.toQueryParams(), projection);
+    }
+
+    public List<CaptureJobSummary> getCaptureJobSummaries(CaptureJobQuery query) throws IOException, ApiException
+    {
+        return getList("capture-jobs", query.toQueryParams(CaptureJobSummary.FIELDS), CaptureJobSummary.class);
+    }
+
+    public Stream<CaptureJob> streamCaptureJobs(CaptureJobQuery query) throws IOException, ApiException
+    {
+        return streamList("capture-jobs", query.toQueryParams(), CaptureJob.class);
+    }
+
+    public <R> Stream<R> streamCaptureJobs(CaptureJobQuery query, Class<R> projection) throws IOException, ApiException
+    {
+        return streamList("capture-jobs", query.toQueryParams(), projection);
+    }
+
+    public Stream<CaptureJobSummary> streamCaptureJobSummaries(CaptureJobQuery query) throws IOException, ApiException
+    {
+        return streamList("capture-jobs", query.toQueryParams(CaptureJobSummary.FIELDS), CaptureJobSummary.class);
+    }
+
+    static Map<String, Object> captureJobsQueryParams(Integer channelId, String externalId, CaptureJobStatus captureJobStatus)
     {
         Map<String, Object> queryParams = new LinkedHashMap<>();
 
@@ -476,7 +759,7 @@ public class CaptureService
             queryParams.put("status", captureJobStatus);
         }
 
-        return getList("capture-jobs", queryParams, CaptureJob.class);
+        return queryParams;
     }
 
     public CaptureJob getCaptureJob(UUID captureJobId) throws IOException, ApiException
@@ -531,7 +814,11 @@ public class CaptureService
 
     public void deleteCaptureJob(UUID captureJobId) throws IOException, ApiException
     {
-        delete("capture-jobs/" + captureJobId);
+        try {
+            delete("capture-jobs/" + captureJobId);
+        } finally {
+            invalidateThumbnail(captureJobId);
+        }
     }
 
     public List<FileCollection> getCaptureJobFiles(UUID captureJobId) throws IOException, ApiException
@@ -561,7 +848,64 @@ public class CaptureService
 
     public byte[] getCaptureJobThumbnail(UUID captureJobId) throws IOException, ApiException
     {
-        return get("capture-jobs/" + captureJobId + "/thumbnail", byte[].class);
+        ThumbnailCache thumbnailCache = this.thumbnailCache;
+        if (thumbnailCache == null) {
+            return get("capture-jobs/" + captureJobId + "/thumbnail", byte[].class);
+        }
+
+        ByteBuffer cached = thumbnailCache.get(captureJobId);
+        if (cached != null) {
+            byte[] thumbnail = new byte[cached.remaining()];
+            cached.get(thumbnail);
+            return thumbnail;
+        }
+
+        long generation = thumbnailCache.currentGeneration(captureJobId);
+        byte[] thumbnail = get("capture-jobs/" + captureJobId + "/thumbnail", byte[].class);
+        thumbnailCache.put(captureJobId, generation, thumbnail);
+        return thumbnail;
+    }
+
+    public long getCaptureJobThumbnail(UUID captureJobId, OutputStream outputStream) throws IOException, ApiException
+    {
+        ThumbnailCache thumbnailCache = this.thumbnailCache;
+        if (thumbnailCache == null) {
+            try (EntityChannel channel = openBinary("capture-jobs/" + captureJobId + "/thumbnail")) {
+                return channel != null ? channel.transferTo(outputStream) : 0;
+            }
+        }
+
+        ByteBuffer cached = thumbnailCache.get(captureJobId);
+        if (cached != null) {
+            int length = cached.remaining();
+            WritableByteChannel target = Channels.newChannel(outputStream);
+            while (cached.hasRemaining()) {
+                target.write(cached);
+            }
+            return length;
+        }
+
+        // the cache keeps a copy anyway, so collect it while passing the body through
+        long generation = thumbnailCache.currentGeneration(captureJobId);
+        try (EntityChannel channel = openBinary("capture-jobs/" + captureJobId + "/thumbnail")) {
+            if (channel == null) {
+                return 0;
+            }
+            ByteArrayOutputStream copy = new ByteArrayOutputStream();
+            long transferred = channel.transferTo(new TeeOutputStream(outputStream, copy));
+            thumbnailCache.put(captureJobId, generation, copy.toByteArray());
+            return transferred;
+        }
+    }
+
+    public ReadableByteChannel openCaptureJobThumbnail(UUID captureJobId) throws IOException, ApiException
+    {
+        ThumbnailCache thumbnailCache = this.thumbnailCache;
+        ByteBuffer cached = thumbnailCache != null ? thumbnailCache.get(captureJobId) : null;
+        if (cached != null) {
+            return new ByteBufferChannel(cached);
+        }
+        return openBinary("capture-jobs/" + captureJobId + "/thumbnail");
     }
 
     public void stopCaptureJob(UUID captureJobId) throws IOException, ApiException
@@ -576,7 +920,27 @@ public class CaptureService
 
     public void restartCaptureJob(UUID captureJobId) throws IOException, ApiException
     {
-        post("capture-jobs/" + captureJobId + "/restart", null, null);
+        try {
+            post("capture-jobs/" + captureJobId + "/restart", null, null);
+        } finally {
+            invalidateThumbnail(captureJobId);
+        }
+    }
+
+    void observe(CaptureJob captureJob)
+    {
+        ThumbnailCache thumbnailCache = this.thumbnailCache;
+        if (thumbnailCache != null) {
+            thumbnailCache.observe(captureJob);
+        }
+    }
+
+    void invalidateThumbnail(UUID captureJobId)
+    {
+        ThumbnailCache thumbnailCache = this.thumbnailCache;
+        if (thumbnailCache != null) {
+            thumbnailCache.invalidate(captureJobId);
+        }
     }
 
     public List<TransferJob> getTransferJobs() throws IOException, ApiException
@@ -595,6 +959,31 @@ public class CaptureService
     }
 
     public List<TransferJob> getTransferJobs(Integer channelId, UUID captureJobId) throws IOException, ApiException
+    {
+        return getList("transfer-jobs", transferJobsQueryParams(channelId, captureJobId), TransferJob.class);
+    }
+
+    public Stream<TransferJob> streamTransferJobs() throws IOException, ApiException
+    {
+        return streamTransferJobs(null, null);
+    }
+
+    public Stream<TransferJob> streamTransferJobs(Integer channelId) throws IOException, ApiException
+    {
+        return streamTransferJobs(channelId, null);
+    }
+
+    public Stream<TransferJob> streamTransferJobs(UUID captureJobId) throws IOException, ApiException
+    {
+        return streamTransferJobs(null, captureJobId);
+    }
+
+    public Stream<TransferJob> streamTransferJobs(Integer channelId, UUID captureJobId) throws IOException, ApiException
+    {
+        return streamList("transfer-jobs", transferJobsQueryParams(channelId, captureJobId), TransferJob.class);
+    }
+
+    static Map<String, Object> transferJobsQueryParams(Integer channelId, UUID captureJobId)
     {
         Map<String, Object> queryParams = new LinkedHashMap<>();
 
@@ -605,7 +994,7 @@ public class CaptureService
             queryParams.put("captureJobId", captureJobId);
         }
 
-        return getList("transfer-jobs", queryParams, TransferJob.class);
+        return queryParams;
     }
 
     public TransferJob getTransferJob(String transferJobId) throws IOException, ApiException
@@ -759,142 +1148,1141 @@ public class CaptureService
         method(HttpMethod.DELETE, path, null, null, null);
     }
 
-    @SuppressWarnings("unchecked")
-    private <T, R> List<R> method(HttpMethod method, String path, Map<String, Object> queryParams, T requestBody, Class<R> responseType) throws IOException, ApiException
+    private <R> Stream<R> streamList(String path, Map<String, Object> queryParams, Class<R> responseType) throws IOException, ApiException
     {
-        StringBuilder url = new StringBuilder(restEndpoint + path);
-
-        if (queryParams != null) {
-            boolean isFirstIteration = true;
+        return guarded(() -> openStream(path, queryParams, responseType));
+    }
 
-            for (Map.Entry<String, Object> e : queryParams.entrySet()) {
-                url.append(isFirstIteration ? "?" : "&");
-                url.append(URLEncoder.encode(e.getKey(), "UTF-8"));
-                url.append("=");
-                url.append(URLEncoder.encode(String.valueOf(e.getValue()), "UTF-8"));
-                isFirstIteration = false;
-            }
-        }
+    private <R> Stream<R> openStream(String path, Map<String, Object> queryParams, Class<R> responseType) throws IOException, ApiException
+    {
+        HttpUriRequest request = createRequest(HttpMethod.GET, path, queryParams, null);
 
-        StringEntity requestEntity = null;
+        CallContext context = attach(request);
+        RequestMetrics requestMetrics = RequestMetrics.start(metrics, HttpMethod.GET, path, request);
 
-        if (requestBody != null) {
-            String requestBodyJson = this.objectMapper.writerWithDefaultPrettyPrinter()
-                                                      .writeValueAsString(requestBody);
-            requestEntity = new StringEntity(requestBodyJson, ContentType.APPLICATION_JSON);
+        CloseableHttpResponse response;
+        try {
+            response = transport.execute(request);
+        } catch (IOException e) {
+            e = translate(context, e);
+            requestMetrics.failed(e);
+            detach(context, request);
+            throw e;
         }
+        ConnectionLeakDetector.Lease lease = lease(HttpMethod.GET, path);
+        boolean isStreaming = false;
 
-        CloseableHttpResponse response;
+        try {
+            requestMetrics.received(response);
+            HttpEntity responseEntity = response.getEntity();
 
-        switch (method) {
-            case GET:
-                HttpGet httpGet = new HttpGet(url.toString());
-                httpGet.setHeader("Accept", "application/json");
-                response = client.execute(httpGet);
-                break;
-            case POST:
-                HttpPost httpPost = new HttpPost(url.toString());
-                httpPost.setHeader("Accept", "application/json");
-                httpPost.setHeader(HTTP.CONTENT_TYPE, "application/json");
-                httpPost.setEntity(requestEntity);
-                response = client.execute(httpPost);
-                break;
-            case PUT:
-                HttpPut httpPut = new HttpPut(url.toString());
-                httpPut.setHeader("Accept", "application/json");
-                httpPut.setHeader(HTTP.CONTENT_TYPE, "application/json");
-                httpPut.setEntity(requestEntity);
-                response = client.execute(httpPut);
-                break;
-            case PATCH:
-                HttpPatch httpPatch = new HttpPatch(url.toString());
-                httpPatch.setHeader("Accept", "application/json");
-                httpPatch.setHeader(HTTP.CONTENT_TYPE, "application/merge-patch+json");
-                httpPatch.setEntity(requestEntity);
-                response = client.execute(httpPatch);
-                break;
-            case DELETE:
-                HttpDelete httpDelete = new HttpDelete(url.toString());
-                httpDelete.setHeader("Accept", "application/json");
-                response = client.execute(httpDelete);
-                break;
-            default:
-                throw new IllegalArgumentException("Method '" + method + "' not implemented");
-        }
+            if (response.getStatusLine().getStatusCode() != HTTP_OK || responseEntity == null || responseEntity.getContentType() == null || !isJson(responseEntity)) {
+                return handleResponse(HttpMethod.GET, path, response, responseType).stream();
+            }
 
-        HttpEntity responseEntity = response.getEntity();
+            ObjectReader reader = readers.computeIfAbsent(responseType, objectMapper::readerFor);
+            JsonParser parser = reader.getFactory().createParser(responseEntity.getContent());
+            JsonStreamIterator<R> iterator = new JsonStreamIterator<>(parser, reader, () -> {
+                lease.release();
+                response.close();
+                requestMetrics.completed();
+                detach(context, request);
+            });
+            isStreaming = true;
+
+            Stream<R> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                                            .onClose(iterator::close);
+            if (responseType == CaptureJob.class && thumbnailCache != null) {
+                stream = stream.peek(captureJob -> observe((CaptureJob) captureJob));
+            }
+            return stream;
+        } catch (IOException e) {
+            e = translate(context, e);
+            requestMetrics.failed(e);
+            throw e;
+        } catch (ApiException e) {
+            requestMetrics.failed(e);
+            throw e;
+        } finally {
+            if (!isStreaming) {
+                response.close();
+                lease.release();
+                requestMetrics.completed();
+                detach(context, request);
+            }
+        }
+    }
 
-        JsonNode jsonNode = null;
-        byte[] rawData = null;
+    private EntityChannel openBinary(String path) throws IOException, ApiException
+    {
+        return guarded(() -> openChannel(path));
+    }
 
-        if (responseEntity.getContent() != null) {
-            boolean isJson = false;
+    private EntityChannel openChannel(String path) throws IOException, ApiException
+    {
+        HttpUriRequest request = createRequest(HttpMethod.GET, path, null, null);
 
-            if (responseEntity.getContentType() != null) {
-                for (HeaderElement headerElement : responseEntity.getContentType().getElements()) {
-                    if (Objects.equals(headerElement.getName(), "application/json")) {
-                        isJson = true;
-                    }
-                }
+        CallContext context = attach(request);
+        RequestMetrics requestMetrics = RequestMetrics.start(metrics, HttpMethod.GET, path, request);
 
-                if (isJson) {
-                    jsonNode = objectMapper.readTree(responseEntity.getContent());
-                } else {
-                    rawData = IOUtils.toByteArray(responseEntity.getContent());
-                }
-            }
+        CloseableHttpResponse response;
+        try {
+            response = transport.execute(request);
+        } catch (IOException e) {
+            e = translate(context, e);
+            requestMetrics.failed(e);
+            detach(context, request);
+            throw e;
         }
+        ConnectionLeakDetector.Lease lease = lease(HttpMethod.GET, path);
+        boolean isStreaming = false;
 
-        int status = response.getStatusLine().getStatusCode();
-        List<R> result = responseType != null ? new ArrayList<>() : null;
+        try {
+            requestMetrics.received(response);
+            HttpEntity responseEntity = response.getEntity();
 
-        if (status / 100 * 100 == 200) {
-            switch (status) {
-                case HTTP_OK:
-                case HTTP_CREATED:
-                    if (result != null) {
-                        if (jsonNode != null) {
-                            if (jsonNode.isArray()) {
-                                for (JsonNode node : jsonNode) {
-                                    result.add(objectMapper.treeToValue(node, responseType));
-                                }
-                            } else {
-                                result.add(objectMapper.treeToValue(jsonNode, responseType));
-                            }
-                        }
-                        if (rawData != null && Objects.equals(responseType, byte[].class)) {
-                            result.add((R) rawData);
-                        }
-                    }
-                    break;
-                case HTTP_ACCEPTED:
-                    break;
-            }
-        } else {
-            ApiError apiError = null;
-            if (jsonNode != null) {
-                try {
-                    apiError = objectMapper.treeToValue(jsonNode, ApiError.class);
-                } catch (Exception ignored) {
-                }
+            if (response.getStatusLine().getStatusCode() != HTTP_OK || responseEntity == null || responseEntity.getContentType() == null || isJson(responseEntity)) {
+                handleResponse(HttpMethod.GET, path, response, null);
+                return null;
             }
 
-            if (apiError == null) {
-                apiError = ApiError.builder()
-                        .status(status)
-                        .error(response.getStatusLine().getReasonPhrase())
-                        .path(restEndpoint + path)
-                        .method(method.toString())
-                        .build();
+            EntityChannel channel = new EntityChannel(responseEntity.getContent(), () -> {
+                lease.release();
+                response.close();
+                requestMetrics.completed();
+                detach(context, request);
+            });
+            isStreaming = true;
+
+            return channel;
+        } catch (IOException e) {
+            e = translate(context, e);
+            requestMetrics.failed(e);
+            throw e;
+        } catch (ApiException e) {
+            requestMetrics.failed(e);
+            throw e;
+        } finally {
+            if (!isStreaming) {
+                response.close();
+                lease.release();
+                requestMetrics.completed();
+                detach(context, request);
             }
-
-            throw new ApiException(apiError);
         }
+    }
 
+    private <T, R> List<R> method(HttpMethod method, String path, Map<String, Object> queryParams, T requestBody, Class<R> responseType) throws IOException, ApiException
+    {
+        CatalogCache catalogCache = this.catalogCache;
+        String resource = catalogCache != null ? resource(path) : null;
+
+        if (resource == null || !catalogCache.isCached(resource)) {
+            List<R> result = execute(method, path, queryParams, requestBody, responseType);
+            if (responseType == CaptureJob.class && result != null && thumbnailCache != null) {
+                result.forEach(captureJob -> observe((CaptureJob) captureJob));
+            }
+            return result;
+        }
+
+        if (method != HttpMethod.GET) {
+            try {
+                return execute(method, path, queryParams, requestBody, responseType);
+            } finally {
+                catalogCache.refresh(resource);
+            }
+        }
+
+        String key = url(path, queryParams);
+        List<R> cached = catalogCache.get(resource, key, responseType);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = catalogCache.currentGeneration(resource);
+        List<R> result = execute(method, path, queryParams, requestBody, responseType);
+        return result != null ? catalogCache.put(resource, key, generation, responseType, result) : null;
+    }
+
+    private static String resource(String path)
+    {
+        int index = path.indexOf('/');
+        return index < 0 ? path : path.substring(0, index);
+    }
+
+    private <T, R> List<R> execute(HttpMethod method, String path, Map<String, Object> queryParams, T requestBody, Class<R> responseType) throws IOException, ApiException
+    {
+        if (method == HttpMethod.GET && singleFlight) {
+            return executeShared(path, queryParams, responseType);
+        }
+        return executeResilient(method, path, queryParams, requestBody, responseType);
+    }
+
+    private <R> List<R> executeShared(String path, Map<String, Object> queryParams, Class<R> responseType) throws IOException, ApiException
+    {
+        String key = responseType + " " + url(path, queryParams);
+        CallContext context = CallContext.current();
+
+        while (true) {
+            Flight call = new Flight();
+            Flight shared = inFlightGets.compute(key, (k, flight) -> flight != null ? flight.follow() : call);
+
+            if (shared == call) {
+                List<R> result;
+                try {
+                    result = executeResilient(HttpMethod.GET, path, queryParams, null, responseType);
+                } catch (IOException | ApiException | RuntimeException e) {
+                    inFlightGets.remove(key, call);
+                    // the leader's own deadline or cancellation says nothing about the followers' calls
+                    call.completeExceptionally(isAbandoned(context, e) ? new AbandonedCallException(e) : e);
+                    throw e;
+                }
+
+                // nobody can join once the call is removed, the followers decode their own copy of the body
+                inFlightGets.remove(key, call);
+                if (call.followers > 0) {
+                    try {
+                        call.complete(result != null ? objectMapper.writeValueAsBytes(result) : null);
+                    } catch (IOException | RuntimeException e) {
+                        call.completeExceptionally(e);
+                    }
+                }
+                return result;
+            }
+
+            sharedGets.increment();
+            try {
+                byte[] body = context != null && context.hasDeadline()
+                              ? shared.get(context.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)
+                              : shared.get();
+                return body != null ? decode(body, responseType) : null;
+            } catch (TimeoutException e) {
+                throw new DeadlineExceededException("Deadline exceeded waiting for a shared request");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.getMessage());
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof AbandonedCallException)) {
+                    throw unwrap(e.getCause());
+                }
+            }
+
+            // the leader gave up, send the request again or follow whichever caller did
+            if (context != null) {
+                context.check();
+            }
+        }
+    }
+
+    private static boolean isAbandoned(CallContext context, Throwable e)
+    {
+        return e instanceof DeadlineExceededException
+               || (context != null && (context.isCancelled() || context.isExpired()))
+               || Thread.currentThread().isInterrupted();
+    }
+
+    private static IOException unwrap(Throwable cause) throws ApiException
+    {
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof ApiException) {
+            throw (ApiException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+
+    private <T, R> List<R> executeResilient(HttpMethod method, String path, Map<String, Object> queryParams, T requestBody, Class<R> responseType) throws IOException, ApiException
+    {
+        ResiliencePolicy policy = this.resiliencePolicy;
+        CircuitBreaker circuitBreaker = this.circuitBreaker;
+        if (policy == null || circuitBreaker == null) {
+            return executeInLane(method, path, queryParams, requestBody, responseType);
+        }
+
+        for (int attempt = 0; ; attempt++) {
+            if (!circuitBreaker.allow()) {
+                throw circuitOpen(circuitBreaker);
+            }
+
+            try {
+                List<R> result = method == HttpMethod.GET && policy.isHedged(path)
+                                 ? executeHedged(policy, path, queryParams, responseType)
+                                 : executeInLane(method, path, queryParams, requestBody, responseType);
+                onStateChange(circuitBreaker.onSuccess());
+                return result;
+            } catch (IOException e) {
+                if (!onAttemptFailed(circuitBreaker, method, e) || attempt >= policy.getMaxRetries()) {
+                    throw e;
+                }
+                backoff(policy, method, path, attempt, e);
+            } catch (ApiException e) {
+                if (!onAttemptFailed(circuitBreaker, method, e) || attempt >= policy.getMaxRetries()) {
+                    throw e;
+                }
+                backoff(policy, method, path, attempt, e);
+            } catch (RuntimeException e) {
+                circuitBreaker.onNeutral();
+                throw e;
+            }
+        }
+    }
+
+    // tells the breaker how an attempt failed, true when sending the request again may succeed
+    private boolean onAttemptFailed(CircuitBreaker circuitBreaker, HttpMethod method, Throwable failure)
+    {
+        if (failure instanceof IOException) {
+            if (!isNodeFailure((IOException) failure)) {
+                circuitBreaker.onNeutral();
+                return false;
+            }
+            // a refused or timed out connect never reached the server, so even a POST can be sent again
+            boolean retryable = isIdempotent(method) || failure instanceof ConnectException || failure instanceof ConnectTimeoutException;
+            return onFailure(circuitBreaker) && retryable;
+        }
+        if (failure instanceof ApiException) {
+            if (!isUnavailable((ApiException) failure)) {
+                onStateChange(circuitBreaker.onSuccess());
+                return false;
+            }
+            return onFailure(circuitBreaker) && isIdempotent(method);
+        }
+        circuitBreaker.onNeutral();
+        return false;
+    }
+
+    // streams and in-place reads are never retried, but the breaker still rejects them and counts how opening them went
+    private <V> V guarded(Request<V> request) throws IOException, ApiException
+    {
+        CircuitBreaker circuitBreaker = this.circuitBreaker;
+        if (circuitBreaker == null) {
+            return request.execute();
+        }
+        if (!circuitBreaker.allow()) {
+            throw circuitOpen(circuitBreaker);
+        }
+
+        try {
+            V result = request.execute();
+            onStateChange(circuitBreaker.onSuccess());
+            return result;
+        } catch (IOException | ApiException | RuntimeException e) {
+            onAttemptFailed(circuitBreaker, HttpMethod.GET, e);
+            throw e;
+        }
+    }
+
+    private CircuitBreakerOpenException circuitOpen(CircuitBreaker circuitBreaker)
+    {
+        return new CircuitBreakerOpenException("Circuit breaker for " + hostname + ":" + port + " is open, next attempt in " + circuitBreaker.remainingOpen(TimeUnit.MILLISECONDS) + " ms");
+    }
+
+    // false when this failure opened the circuit, further attempts would only be rejected
+    private boolean onFailure(CircuitBreaker circuitBreaker)
+    {
+        return !onStateChange(circuitBreaker.onFailure());
+    }
+
+    private boolean onStateChange(CircuitBreaker.State state)
+    {
+        if (state == null) {
+            return false;
+        }
+
+        CaptureServiceMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.onCircuitBreakerStateChange(hostname, state);
+        }
+        return true;
+    }
+
+    private <E extends Exception> void backoff(ResiliencePolicy policy, HttpMethod method, String path, int attempt, E exception) throws E, InterruptedIOException
+    {
+        long backoffMillis = retryDelay(policy, CallContext.current(), method, path, attempt, exception);
+        if (backoffMillis < 0) {
+            throw exception;
+        }
+
+        try {
+            Thread.sleep(backoffMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+    }
+
+    // -1 when a retry could not finish before the caller's deadline and is not worth sending
+    private long retryDelay(ResiliencePolicy policy, CallContext context, HttpMethod method, String path, int attempt, Exception exception)
+    {
+        long backoffMillis = policy.backoffMillis(attempt, ThreadLocalRandom.current().nextDouble());
+        if (context != null && (context.isCancelled() || context.remaining(TimeUnit.MILLISECONDS) <= backoffMillis)) {
+            return -1;
+        }
+
+        retries.increment();
+        CaptureServiceMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.onRetry(method.name(), RequestMetrics.endpoint(path), attempt + 1, exception);
+        }
+        return backoffMillis;
+    }
+
+    private static boolean isNodeFailure(IOException e)
+    {
+        return !(e instanceof ConnectionPoolTimeoutException) && !(e instanceof CircuitBreakerOpenException) && !(e instanceof DeadlineExceededException) &&
+               e.getClass() != InterruptedIOException.class && !Thread.currentThread().isInterrupted();
+    }
+
+    private static boolean isUnavailable(ApiException e)
+    {
+        int status = e.getApiError().getStatus();
+        return status == HTTP_BAD_GATEWAY || status == HTTP_UNAVAILABLE || status == HTTP_GATEWAY_TIMEOUT;
+    }
+
+    private static boolean isIdempotent(HttpMethod method)
+    {
+        return method != HttpMethod.POST && method != HttpMethod.PATCH;
+    }
+
+    // a second copy of a slow read is sent after the hedge delay, whichever answers first wins
+    private <R> List<R> executeHedged(ResiliencePolicy policy, String path, Map<String, Object> queryParams, Class<R> responseType) throws IOException, ApiException
+    {
+        CompletionService<List<R>> completionService = new ExecutorCompletionService<>(hedgeExecutor());
+        HedgeAttempts attempts = new HedgeAttempts();
+        Callable<List<R>> call = () -> {
+            try (CallContext attempt = CallContext.cancellable()) {
+                attempts.add(attempt);
+                return executeInLane(HttpMethod.GET, path, queryParams, null, responseType);
+            }
+        };
+        CallContext context = CallContext.current();
+        if (context != null) {
+            call = context.wrap(call);
+        }
+
+        List<Future<List<R>>> futures = new ArrayList<>(2);
+        futures.add(completionService.submit(call));
+        try {
+            Future<List<R>> done = completionService.poll(policy.getHedgeDelay(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+            if (done == null) {
+                hedges.increment();
+                CaptureServiceMetrics metrics = this.metrics;
+                if (metrics != null) {
+                    metrics.onHedge(HttpMethod.GET.name(), RequestMetrics.endpoint(path));
+                }
+                futures.add(completionService.submit(call));
+            }
+
+            Throwable failure = null;
+            for (int i = 0; i < futures.size(); i++) {
+                if (done == null) {
+                    done = completionService.take();
+                }
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                }
+                done = null;
+            }
+            throw unwrap(failure);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } finally {
+            // interrupting a thread does not stop a blocking read, aborting the loser's request does
+            attempts.cancel();
+            for (Future<List<R>> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private synchronized ExecutorService hedgeExecutor()
+    {
+        if (hedgeExecutor == null) {
+            hedgeExecutor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "CaptureService-hedge-" + hostname);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return hedgeExecutor;
+    }
+
+    private <T, R> List<R> executeInLane(HttpMethod method, String path, Map<String, Object> queryParams, T requestBody, Class<R> responseType) throws IOException, ApiException
+    {
+        if (!isSlow(path)) {
+            return executeRequest(method, path, queryParams, requestBody, responseType);
+        }
+
+        // system tests can take seconds, so they may only hold a few of the pooled connections at a time
+        acquire(slowLane);
+        try {
+            return executeRequest(method, path, queryParams, requestBody, responseType);
+        } finally {
+            slowLane.release();
+        }
+    }
+
+    private static boolean isSlow(String path)
+    {
+        return path.endsWith("/test");
+    }
+
+    private CaptureTransport transport(String path)
+    {
+        return REALTIME_PATH.matcher(path).matches() ? realtimeTransport : transport;
+    }
+
+    private void acquire(Semaphore lane) throws IOException
+    {
+        CallContext context = CallContext.current();
+        long timeoutMillis = leaseTimeoutMillis;
+        if (context != null && context.hasDeadline()) {
+            context.check();
+            long remaining = context.remaining(TimeUnit.MILLISECONDS);
+            timeoutMillis = timeoutMillis < 0 ? remaining : Math.min(timeoutMillis, remaining);
+        }
+
+        try {
+            if (timeoutMillis < 0) {
+                lane.acquire();
+            } else if (!lane.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw translate(context, new ConnectionPoolTimeoutException("Timeout waiting for a slow lane connection"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+    }
+
+    // decodes the response into an existing object instead of allocating a new one, for callers polling at frame rate
+    <R> R update(String path, R value) throws IOException, ApiException
+    {
+        return guarded(() -> readInto(path, value));
+    }
+
+    private <R> R readInto(String path, R value) throws IOException, ApiException
+    {
+        HttpUriRequest request = createRequest(HttpMethod.GET, path, null, null);
+        CallContext context = attach(request);
+        RequestMetrics requestMetrics = RequestMetrics.start(metrics, HttpMethod.GET, path, request);
+
+        try (CloseableHttpResponse response = transport(path).execute(request)) {
+            ConnectionLeakDetector.Lease lease = lease(HttpMethod.GET, path);
+            try {
+                requestMetrics.received(response);
+                HttpEntity responseEntity = response.getEntity();
+
+                if (response.getStatusLine().getStatusCode() != HTTP_OK || responseEntity == null || responseEntity.getContentType() == null || !isJson(responseEntity)) {
+                    handleResponse(HttpMethod.GET, path, response, null);
+                    return null;
+                }
+
+                ObjectReader reader = readers.computeIfAbsent(value.getClass(), objectMapper::readerFor);
+                try (InputStream content = responseEntity.getContent()) {
+                    return reader.withValueToUpdate(value).readValue(content);
+                }
+            } finally {
+                lease.release();
+            }
+        } catch (IOException e) {
+            e = translate(context, e);
+            requestMetrics.failed(e);
+            throw e;
+        } catch (ApiException e) {
+            requestMetrics.failed(e);
+            throw e;
+        } finally {
+            requestMetrics.completed();
+            detach(context, request);
+        }
+    }
+
+    private <T, R> List<R> executeRequest(HttpMethod method, String path, Map<String, Object> queryParams, T requestBody, Class<R> responseType) throws IOException, ApiException
+    {
+        HttpUriRequest request = createRequest(method, path, queryParams, requestBody);
+        CallContext context = attach(request);
+        RequestMetrics requestMetrics = RequestMetrics.start(metrics, method, path, request);
+
+        ConditionalRequestCache conditionalRequestCache = method == HttpMethod.GET ? this.conditionalRequestCache : null;
+        if (conditionalRequestCache != null && !conditionalRequestCache.isCached(resource(path))) {
+            conditionalRequestCache = null;
+        }
+        String url = request.getURI().toString();
+        ConditionalRequestCache.Entry cacheEntry = null;
+        if (conditionalRequestCache != null) {
+            cacheEntry = conditionalRequestCache.get(url);
+            conditionalRequestCache.prepare(request, cacheEntry);
+        }
+
+        try (CloseableHttpResponse response = transport(path).execute(request)) {
+            ConnectionLeakDetector.Lease lease = lease(method, path);
+            try {
+                requestMetrics.received(response);
+                if (conditionalRequestCache != null) {
+                    return handleConditionalResponse(conditionalRequestCache, cacheEntry, url, method, path, response, responseType);
+                }
+                return handleResponse(method, path, response, responseType);
+            } finally {
+                lease.release();
+            }
+        } catch (IOException e) {
+            e = translate(context, e);
+            requestMetrics.failed(e);
+            throw e;
+        } catch (ApiException e) {
+            requestMetrics.failed(e);
+            throw e;
+        } finally {
+            requestMetrics.completed();
+            detach(context, request);
+        }
+    }
+
+    // the same caches, single-flight, breaker and retries as method(), but nothing blocks: the exchange runs on
+    // transport.executeAsync and backoffs are scheduled; a CallContext active at the call bounds and cancels it
+    <T, R> CompletableFuture<List<R>> methodAsync(HttpMethod method, String path, Map<String, Object> queryParams, T requestBody, Class<R> responseType)
+    {
+        CallContext context = CallContext.current();
+        try {
+            CatalogCache catalogCache = this.catalogCache;
+            String resource = catalogCache != null ? resource(path) : null;
+
+            if (resource == null || !catalogCache.isCached(resource)) {
+                CompletableFuture<List<R>> result = executeAsync(context, method, path, queryParams, requestBody, responseType);
+                if (responseType == CaptureJob.class && thumbnailCache != null) {
+                    return result.thenApply(list -> {
+                        if (list != null) {
+                            list.forEach(captureJob -> observe((CaptureJob) captureJob));
+                        }
+                        return list;
+                    });
+                }
+                return result;
+            }
+
+            if (method != HttpMethod.GET) {
+                return executeAsync(context, method, path, queryParams, requestBody, responseType).whenComplete((list, throwable) -> catalogCache.refresh(resource));
+            }
+
+            String key = url(path, queryParams);
+            List<R> cached = catalogCache.get(resource, key, responseType);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+
+            long generation = catalogCache.currentGeneration(resource);
+            return executeAsync(context, method, path, queryParams, requestBody, responseType)
+                .thenApply(list -> list != null ? catalogCache.put(resource, key, generation, responseType, list) : null);
+        } catch (IOException | RuntimeException e) {
+            return failed(e);
+        }
+    }
+
+    private <T, R> CompletableFuture<List<R>> executeAsync(CallContext context, HttpMethod method, String path, Map<String, Object> queryParams, T requestBody,
+                                                           Class<R> responseType) throws IOException
+    {
+        if (method == HttpMethod.GET && singleFlight) {
+            return executeSharedAsync(context, path, queryParams, responseType);
+        }
+        return executeResilientAsync(context, method, path, queryParams, requestBody, responseType, 0);
+    }
+
+    // shares the in-flight map with executeShared, so synchronous and asynchronous callers follow each other
+    private <R> CompletableFuture<List<R>> executeSharedAsync(CallContext context, String path, Map<String, Object> queryParams, Class<R> responseType) throws IOException
+    {
+        String key = responseType + " " + url(path, queryParams);
+        Flight call = new Flight();
+        Flight shared = inFlightGets.compute(key, (k, flight) -> flight != null ? flight.follow() : call);
+
+        if (shared == call) {
+            return this.<Void, R>executeResilientAsync(context, HttpMethod.GET, path, queryParams, null, responseType, 0).whenComplete((result, throwable) -> {
+                inFlightGets.remove(key, call);
+                if (throwable != null) {
+                    Throwable cause = cause(throwable);
+                    call.completeExceptionally(isAbandoned(context, cause) ? new AbandonedCallException(cause) : cause);
+                } else if (call.followers > 0) {
+                    try {
+                        call.complete(result != null ? objectMapper.writeValueAsBytes(result) : null);
+                    } catch (IOException | RuntimeException e) {
+                        call.completeExceptionally(e);
+                    }
+                }
+            });
+        }
+
+        sharedGets.increment();
+        return (context != null ? context.bound(shared) : shared).handle((body, throwable) -> {
+            try {
+                if (throwable == null) {
+                    return CompletableFuture.completedFuture(body != null ? decode(body, responseType) : null);
+                }
+                Throwable cause = cause(throwable);
+                if (!(cause instanceof AbandonedCallException)) {
+                    return CaptureService.<List<R>>failed(cause);
+                }
+                // the leader gave up, send the request again or follow whichever caller did
+                if (context != null) {
+                    context.check();
+                }
+                return executeSharedAsync(context, path, queryParams, responseType);
+            } catch (IOException e) {
+                return CaptureService.<List<R>>failed(e);
+            }
+        }).thenCompose(future -> future);
+    }
+
+    private <T, R> CompletableFuture<List<R>> executeResilientAsync(CallContext context, HttpMethod method, String path, Map<String, Object> queryParams, T requestBody,
+                                                                    Class<R> responseType, int attempt)
+    {
+        ResiliencePolicy policy = this.resiliencePolicy;
+        CircuitBreaker circuitBreaker = this.circuitBreaker;
+        if (policy == null || circuitBreaker == null) {
+            return executeRequestAsync(context, method, path, queryParams, requestBody, responseType);
+        }
+        if (!circuitBreaker.allow()) {
+            return failed(circuitOpen(circuitBreaker));
+        }
+
+        CompletableFuture<List<R>> future = new CompletableFuture<>();
+        executeRequestAsync(context, method, path, queryParams, requestBody, responseType).whenComplete((result, throwable) -> {
+            if (throwable == null) {
+                onStateChange(circuitBreaker.onSuccess());
+                future.complete(result);
+                return;
+            }
+
+            Throwable cause = cause(throwable);
+            long backoffMillis = onAttemptFailed(circuitBreaker, method, cause) && attempt < policy.getMaxRetries()
+                                 ? retryDelay(policy, context, method, path, attempt, (Exception) cause)
+                                 : -1;
+            if (backoffMillis < 0) {
+                future.completeExceptionally(cause);
+                return;
+            }
+
+            CallContext.schedule(() -> executeResilientAsync(context, method, path, queryParams, requestBody, responseType, attempt + 1).whenComplete((retried, failure) -> {
+                if (failure != null) {
+                    future.completeExceptionally(cause(failure));
+                } else {
+                    future.complete(retried);
+                }
+            }), backoffMillis, TimeUnit.MILLISECONDS);
+        });
+        return future;
+    }
+
+    private <T, R> CompletableFuture<List<R>> executeRequestAsync(CallContext context, HttpMethod method, String path, Map<String, Object> queryParams, T requestBody,
+                                                                  Class<R> responseType)
+    {
+        if (!isSlow(path)) {
+            return dispatchAsync(context, method, path, queryParams, requestBody, responseType);
+        }
+
+        // same slow lane as executeInLane, the permit is held until the exchange completes
+        CompletableFuture<List<R>> future = new CompletableFuture<>();
+        acquireAsync(context, slowLane).whenComplete((ignored, throwable) -> {
+            if (throwable != null) {
+                future.completeExceptionally(throwable);
+                return;
+            }
+            if (future.isDone()) {
+                slowLane.release();
+                return;
+            }
+
+            CompletableFuture<List<R>> exchange = dispatchAsync(context, method, path, queryParams, requestBody, responseType);
+            exchange.whenComplete((result, failure) -> {
+                slowLane.release();
+                if (failure != null) {
+                    future.completeExceptionally(cause(failure));
+                } else {
+                    future.complete(result);
+                }
+            });
+            future.whenComplete((result, failure) -> {
+                if (future.isCancelled()) {
+                    exchange.cancel(false);
+                }
+            });
+        });
+        return future;
+    }
+
+    // waits for a permit without blocking the caller or the scheduler thread
+    private CompletableFuture<Void> acquireAsync(CallContext context, Semaphore lane)
+    {
+        CompletableFuture<Void> acquired = new CompletableFuture<>();
+        long timeoutMillis = leaseTimeoutMillis;
+        if (context != null && context.hasDeadline()) {
+            try {
+                context.check();
+            } catch (IOException e) {
+                acquired.completeExceptionally(e);
+                return acquired;
+            }
+            long remaining = context.remaining(TimeUnit.MILLISECONDS);
+            timeoutMillis = timeoutMillis < 0 ? remaining : Math.min(timeoutMillis, remaining);
+        }
+
+        tryAcquire(context, lane, acquired, timeoutMillis >= 0, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeoutMillis)));
+        return acquired;
+    }
+
+    private void tryAcquire(CallContext context, Semaphore lane, CompletableFuture<Void> acquired, boolean bounded, long deadlineNanos)
+    {
+        if (lane.tryAcquire()) {
+            if (!acquired.complete(null)) {
+                lane.release();
+            }
+        } else if (context != null && context.isCancelled()) {
+            acquired.completeExceptionally(new InterruptedIOException("Call cancelled"));
+        } else if (bounded && System.nanoTime() - deadlineNanos >= 0) {
+            acquired.completeExceptionally(translate(context, new ConnectionPoolTimeoutException("Timeout waiting for a slow lane connection")));
+        } else {
+            CallContext.schedule(() -> tryAcquire(context, lane, acquired, bounded, deadlineNanos), SLOW_LANE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private <T, R> CompletableFuture<List<R>> dispatchAsync(CallContext context, HttpMethod method, String path, Map<String, Object> queryParams, T requestBody,
+                                                            Class<R> responseType)
+    {
+        HttpUriRequest request;
+        try {
+            request = createRequest(method, path, queryParams, requestBody);
+            attach(context, request);
+        } catch (IOException | RuntimeException e) {
+            return failed(e);
+        }
+        RequestMetrics requestMetrics = RequestMetrics.start(metrics, method, path, request);
+
+        ConditionalRequestCache conditionalRequestCache = method == HttpMethod.GET ? this.conditionalRequestCache : null;
+        if (conditionalRequestCache != null && !conditionalRequestCache.isCached(resource(path))) {
+            conditionalRequestCache = null;
+        }
+        String url = request.getURI().toString();
+        ConditionalRequestCache.Entry cacheEntry = null;
+        if (conditionalRequestCache != null) {
+            cacheEntry = conditionalRequestCache.get(url);
+            conditionalRequestCache.prepare(request, cacheEntry);
+        }
+
+        // the caller has usually closed its context long before the response arrives, so the exchange keeps its own deadline
+        ScheduledFuture<?> deadline = context != null && context.hasDeadline()
+                                      ? CallContext.schedule(request::abort, context.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)
+                                      : null;
+
+        ConditionalRequestCache cache = conditionalRequestCache;
+        ConditionalRequestCache.Entry entry = cacheEntry;
+        CompletableFuture<List<R>> future = new CompletableFuture<>();
+        // transport commands get the realtime transport's own non-blocking client, so a saturated bulk pool cannot queue them
+        transport(path).executeAsync(request).whenComplete((response, throwable) -> {
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+            try {
+                if (throwable != null) {
+                    throw exchangeFailure(throwable);
+                }
+                requestMetrics.received(response);
+                future.complete(cache != null
+                                ? handleConditionalResponse(cache, entry, url, method, path, response, responseType)
+                                : handleResponse(method, path, response, responseType));
+            } catch (IOException e) {
+                e = translate(context, e);
+                requestMetrics.failed(e);
+                future.completeExceptionally(e);
+            } catch (ApiException e) {
+                requestMetrics.failed(e);
+                future.completeExceptionally(e);
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            } finally {
+                requestMetrics.completed();
+                detach(context, request);
+            }
+        });
+
+        // cancelling the returned future aborts the exchange and releases its connection
+        future.whenComplete((result, throwable) -> {
+            if (future.isCancelled()) {
+                request.abort();
+            }
+        });
+        return future;
+    }
+
+    private static IOException exchangeFailure(Throwable throwable) throws ApiException
+    {
+        Throwable cause = cause(throwable);
+        if (cause instanceof CancellationException) {
+            return new InterruptedIOException("Request aborted");
+        }
+        return unwrap(cause);
+    }
+
+    private static Throwable cause(Throwable throwable)
+    {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+    }
+
+    private static <V> CompletableFuture<V> failed(Throwable throwable)
+    {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
+    // bounds lease, connect and each read by what is left of the caller's deadline and makes the request abortable
+    private CallContext attach(HttpUriRequest request) throws IOException
+    {
+        CallContext context = CallContext.current();
+        attach(context, request);
+        return context;
+    }
+
+    private void attach(CallContext context, HttpUriRequest request) throws IOException
+    {
+        if (context == null) {
+            return;
+        }
+
+        context.check();
+        if (context.hasDeadline() && request instanceof HttpRequestBase) {
+            int remaining = (int) Math.max(1, Math.min(Integer.MAX_VALUE, context.remaining(TimeUnit.MILLISECONDS)));
+            ((HttpRequestBase) request).setConfig(RequestConfig.custom()
+                                                               .setConnectionRequestTimeout(leaseTimeoutMillis < 0 ? remaining : (int) Math.min(leaseTimeoutMillis, remaining))
+                                                               .setConnectTimeout(remaining)
+                                                               .setSocketTimeout(socketTimeoutMillis <= 0 ? remaining : Math.min(socketTimeoutMillis, remaining))
+                                                               .build());
+        }
+        context.register(request);
+    }
+
+    private static void detach(CallContext context, HttpUriRequest request)
+    {
+        if (context != null) {
+            context.unregister(request);
+        }
+    }
+
+    private static IOException translate(CallContext context, IOException e)
+    {
+        return context != null ? context.translate(e) : e;
+    }
+
+    private ConnectionLeakDetector.Lease lease(HttpMethod method, String path)
+    {
+        ConnectionLeakDetector leakDetector = this.leakDetector;
+        return leakDetector != null ? leakDetector.acquire(method + " " + restEndpoint + path) : ConnectionLeakDetector.NO_LEASE;
+    }
+
+    private String url(String path, Map<String, Object> queryParams) throws IOException
+    {
+        StringBuilder url = new StringBuilder(restEndpoint + path);
+
+        if (queryParams != null) {
+            boolean isFirstIteration = true;
+
+            for (Map.Entry<String, Object> e : queryParams.entrySet()) {
+                url.append(isFirstIteration ? "?" : "&");
+                url.append(URLEncoder.encode(e.getKey(), "UTF-8"));
+                url.append("=");
+                url.append(URLEncoder.encode(String.valueOf(e.getValue()), "UTF-8"));
+                isFirstIteration = false;
+            }
+        }
+
+        return url.toString();
+    }
+
+    private <R> List<R> handleConditionalResponse(ConditionalRequestCache conditionalRequestCache, ConditionalRequestCache.Entry cacheEntry, String url,
+                                                  HttpMethod method, String path, HttpResponse response, Class<R> responseType) throws IOException, ApiException
+    {
+        int status = response.getStatusLine().getStatusCode();
+
+        if (status == HTTP_NOT_MODIFIED && cacheEntry != null) {
+            EntityUtils.consume(response.getEntity());
+            if (!cacheEntry.holds(responseType)) {
+                return decode(cacheEntry.getBody(), responseType);
+            }
+            return cast(conditionalRequestCache.notModified(cacheEntry));
+        }
+        if (status != HTTP_OK || response.getEntity() == null) {
+            return handleResponse(method, path, response, responseType);
+        }
+
+        HttpEntity responseEntity = response.getEntity();
+        byte[] body = EntityUtils.toByteArray(responseEntity);
+
+        if (cacheEntry != null && cacheEntry.holds(responseType) && cacheEntry.matches(body)) {
+            return cast(conditionalRequestCache.unchangedBody(url, cacheEntry, response));
+        }
+
+        ByteArrayEntity bufferedEntity = new ByteArrayEntity(body);
+        bufferedEntity.setContentType(responseEntity.getContentType());
+        response.setEntity(bufferedEntity);
+
+        List<R> result = handleResponse(method, path, response, responseType);
+        if (result != null) {
+            return conditionalRequestCache.modified(url, body, response, responseType, result);
+        }
+        return null;
+    }
+
+    // the entry was decoded as responseType, see ConditionalRequestCache.Entry.holds
+    @SuppressWarnings("unchecked")
+    private static <R> List<R> cast(List<?> list)
+    {
+        return (List<R>) list;
+    }
+
+    <T> HttpUriRequest createRequest(HttpMethod method, String path, Map<String, Object> queryParams, T requestBody) throws IOException
+    {
+        String url = url(path, queryParams);
+
+        JsonEntity requestEntity = null;
+
+        if (requestBody != null) {
+            ObjectWriter writer = writers.computeIfAbsent(requestBody.getClass(), type -> objectMapper.writerFor(type)
+                                                                                                     .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
+            requestEntity = new JsonEntity(writer, requestBody, chunkedRequests);
+        }
+
+        switch (method) {
+            case GET:
+                HttpGet httpGet = new HttpGet(url);
+                httpGet.setHeader("Accept", "application/json");
+                return httpGet;
+            case POST:
+                HttpPost httpPost = new HttpPost(url);
+                httpPost.setHeader("Accept", "application/json");
+                httpPost.setHeader(HTTP.CONTENT_TYPE, "application/json");
+                httpPost.setEntity(requestEntity);
+                return httpPost;
+            case PUT:
+                HttpPut httpPut = new HttpPut(url);
+                httpPut.setHeader("Accept", "application/json");
+                httpPut.setHeader(HTTP.CONTENT_TYPE, "application/json");
+                httpPut.setEntity(requestEntity);
+                return httpPut;
+            case PATCH:
+                HttpPatch httpPatch = new HttpPatch(url);
+                httpPatch.setHeader("Accept", "application/json");
+                httpPatch.setHeader(HTTP.CONTENT_TYPE, "application/merge-patch+json");
+                httpPatch.setEntity(requestEntity);
+                return httpPatch;
+            case DELETE:
+                HttpDelete httpDelete = new HttpDelete(url);
+                httpDelete.setHeader("Accept", "application/json");
+                return httpDelete;
+            default:
+                throw new IllegalArgumentException("Method '" + method + "' not implemented");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    <R> List<R> handleResponse(HttpMethod method, String path, HttpResponse response, Class<R> responseType) throws IOException, ApiException
+    {
+        HttpEntity responseEntity = response.getEntity();
+
+        try {
+            boolean hasContent = responseEntity != null && responseEntity.getContent() != null && responseEntity.getContentType() != null;
+            boolean isJson = hasContent && isJson(responseEntity);
+
+            int status = response.getStatusLine().getStatusCode();
+            List<R> result = responseType != null ? new ArrayList<>() : null;
+
+            if (status / 100 * 100 == 200) {
+                switch (status) {
+                    case HTTP_OK:
+                    case HTTP_CREATED:
+                        if (result != null && hasContent) {
+                            if (isJson) {
+                                readValues(responseEntity.getContent(), responseType, result);
+                            } else if (Objects.equals(responseType, byte[].class)) {
+                                result.add((R) IOUtils.toByteArray(responseEntity.getContent()));
+                            }
+                        }
+                        break;
+                    case HTTP_ACCEPTED:
+                        break;
+                }
+            } else {
+                ApiError apiError = null;
+                if (isJson) {
+                    try {
+                        JsonNode jsonNode = objectMapper.readTree(responseEntity.getContent());
+                        if (jsonNode != null) {
+                            apiError = objectMapper.treeToValue(jsonNode, ApiError.class);
+                        }
+                    } catch (Exception ignored) {
+                    }
+                }
+
+                if (apiError == null) {
+                    apiError = ApiError.builder()
+                            .status(status)
+                            .error(response.getStatusLine().getReasonPhrase())
+                            .path(restEndpoint + path)
+                            .method(method.toString())
+                            .build();
+                }
+
+                throw new ApiException(apiError);
+            }
+
+            return result;
+        } finally {
+            EntityUtils.consume(responseEntity);
+        }
+    }
+
+    private <R> void readValues(InputStream content, Class<R> responseType, List<R> result) throws IOException
+    {
+        ObjectReader reader = readers.computeIfAbsent(responseType, objectMapper::readerFor);
+
+        try (JsonParser parser = reader.getFactory().createParser(content)) {
+            JsonToken token = parser.nextToken();
+
+            if (token == JsonToken.START_ARRAY) {
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                    result.add(reader.readValue(parser));
+                }
+            } else if (token != null) {
+                result.add(reader.readValue(parser));
+            }
+        }
+    }
+
+    private <R> List<R> decode(byte[] body, Class<R> responseType) throws IOException
+    {
+        List<R> result = new ArrayList<>();
+        readValues(new ByteArrayInputStream(body), responseType, result);
         return result;
     }
 
-    private enum HttpMethod
+    private static boolean isJson(HttpEntity entity)
+    {
+        for (HeaderElement headerElement : entity.getContentType().getElements()) {
+            if (Objects.equals(headerElement.getName(), "application/json")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    enum HttpMethod
     {
         OPTIONS,
         GET,
@@ -905,14 +2293,29 @@ public class CaptureService
         DELETE
     }
 
+    void maintain()
+    {
+        ConnectionLeakDetector leakDetector = this.leakDetector;
+        if (leakDetector != null) {
+            leakDetector.check();
+        }
+
+        CaptureServiceMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.onPoolStats(transport.getPoolStats());
+        }
+    }
+
     private class IdleConnectionMonitorThread extends Thread
     {
-        private final HttpClientConnectionManager connectionManager;
+        private final CaptureTransport transport;
+        private final CaptureTransport realtimeTransport;
         private volatile boolean shutdown;
 
-        public IdleConnectionMonitorThread(PoolingHttpClientConnectionManager connectionManager)
+        public IdleConnectionMonitorThread(CaptureTransport transport, CaptureTransport realtimeTransport)
         {
-            this.connectionManager = connectionManager;
+            this.transport = transport;
+            this.realtimeTransport = realtimeTransport;
         }
 
         @Override
@@ -922,8 +2325,11 @@ public class CaptureService
                 while (!shutdown) {
                     synchronized (this) {
                         wait(1000);
-                        connectionManager.closeExpiredConnections();
-                        connectionManager.closeIdleConnections(30, TimeUnit.SECONDS);
+                        transport.maintain();
+                        if (realtimeTransport != transport) {
+                            realtimeTransport.maintain();
+                        }
+                        maintain();
                     }
                 }
             } catch (InterruptedException ex) {
@@ -939,4 +2345,90 @@ public class CaptureService
             }
         }
     }
+
+    private static class ByteBufferChannel implements ReadableByteChannel
+    {
+        private final ByteBuffer buffer;
+        private volatile boolean open = true;
+
+        private ByteBufferChannel(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public synchronized int read(ByteBuffer dst) throws IOException
+        {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            int count = Math.min(dst.remaining(), buffer.remaining());
+            ByteBuffer slice = buffer.duplicate();
+            slice.limit(slice.position() + count);
+            dst.put(slice);
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return open;
+        }
+
+        @Override
+        public void close()
+        {
+            open = false;
+        }
+    }
+
+    private static class AbandonedCallException extends RuntimeException
+    {
+        private AbandonedCallException(Throwable cause)
+        {
+            super(cause.getMessage(), cause, false, false);
+        }
+    }
+
+    private static class Flight extends CompletableFuture<byte[]>
+    {
+        // only changed inside compute() on the in-flight map
+        private int followers;
+
+        private Flight follow()
+        {
+            followers++;
+            return this;
+        }
+    }
+
+    private interface Request<V>
+    {
+        V execute() throws IOException, ApiException;
+    }
+
+    private static class HedgeAttempts
+    {
+        private final List<CallContext> contexts = new ArrayList<>(2);
+        private boolean cancelled;
+
+        private synchronized void add(CallContext context)
+        {
+            contexts.add(context);
+            if (cancelled) {
+                context.cancel();
+            }
+        }
+
+        private synchronized void cancel()
+        {
+            cancelled = true;
+            contexts.forEach(CallContext::cancel);
+        }
+    }
 }
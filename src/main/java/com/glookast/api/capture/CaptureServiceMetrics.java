@@ -0,0 +1,34 @@
+package com.glookast.api.capture;
+
+import org.apache.http.pool.PoolStats;
+
+import java.io.IOException;
+
+public interface CaptureServiceMetrics
+{
+    void onRequest(String method, String endpoint, int status, long latencyNanos, long bytesOut, long bytesIn);
+
+    default void onApiException(String method, String endpoint, ApiException exception)
+    {
+    }
+
+    default void onIOException(String method, String endpoint, IOException exception)
+    {
+    }
+
+    default void onPoolStats(PoolStats poolStats)
+    {
+    }
+
+    default void onRetry(String method, String endpoint, int attempt, Exception exception)
+    {
+    }
+
+    default void onHedge(String method, String endpoint)
+    {
+    }
+
+    default void onCircuitBreakerStateChange(String hostname, CircuitBreaker.State state)
+    {
+    }
+}
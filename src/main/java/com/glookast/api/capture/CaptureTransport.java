@@ -0,0 +1,33 @@
+package com.glookast.api.capture;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.pool.PoolStats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+public interface CaptureTransport extends Closeable
+{
+    // closing the returned response before its entity is fully read must abort the exchange
+    CloseableHttpResponse execute(HttpUriRequest request) throws IOException;
+
+    // used by AsyncCaptureService, the response entity is buffered by the time the future completes and
+    // request.abort() must abort the exchange; transports without non-blocking IO run execute() on a pooled thread
+    default CompletableFuture<HttpResponse> executeAsync(HttpUriRequest request)
+    {
+        return BlockingExchange.submit(this, request);
+    }
+
+    PoolStats getPoolStats();
+
+    // called about once a second to evict idle connections or resize pools
+    default void maintain()
+    {
+    }
+
+    @Override
+    void close();
+}
@@ -0,0 +1,162 @@
+package com.glookast.api.capture;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+@SuppressWarnings("WeakerAccess")
+public class CatalogCache
+{
+    private final int maxEntries;
+    private final Map<String, Long> timeToLive = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CatalogCache(int maxEntries)
+    {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+            {
+                return size() > CatalogCache.this.maxEntries;
+            }
+        };
+    }
+
+    public static CatalogCache withDefaults()
+    {
+        return new CatalogCache(1024)
+            .timeToLive("picture-formats", 1, TimeUnit.HOURS)
+            .timeToLive("container-formats", 1, TimeUnit.HOURS)
+            .timeToLive("video-formats", 1, TimeUnit.HOURS)
+            .timeToLive("audio-formats", 1, TimeUnit.HOURS)
+            .timeToLive("templates", 5, TimeUnit.MINUTES)
+            .timeToLive("storage-systems", 5, TimeUnit.MINUTES)
+            .timeToLive("transform-profiles", 5, TimeUnit.MINUTES);
+    }
+
+    public CatalogCache timeToLive(String resource, long duration, TimeUnit unit)
+    {
+        timeToLive.put(resource, unit.toNanos(duration));
+        return this;
+    }
+
+    public Set<String> getResources()
+    {
+        return Collections.unmodifiableSet(timeToLive.keySet());
+    }
+
+    public int getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    public void refresh()
+    {
+        for (String resource : timeToLive.keySet()) {
+            refresh(resource);
+        }
+    }
+
+    public void refresh(String resource)
+    {
+        generation(resource).incrementAndGet();
+
+        synchronized (this) {
+            entries.values().removeIf(entry -> entry.resource.equals(resource));
+        }
+    }
+
+    boolean isCached(String resource)
+    {
+        return timeToLive.containsKey(resource);
+    }
+
+    long currentGeneration(String resource)
+    {
+        return generation(resource).get();
+    }
+
+    // the decoded list is handed to every caller as it is, it cannot be changed but its elements are shared and must not be mutated
+    <R> List<R> get(String resource, String key, Class<R> type)
+    {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && (System.nanoTime() - entry.expiresAt >= 0 || entry.type != type)) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cast(entry.value);
+    }
+
+    <R> List<R> put(String resource, String key, long generation, Class<R> type, List<R> value)
+    {
+        List<R> readOnly = Collections.unmodifiableList(value);
+        if (generation(resource).get() != generation) {
+            return readOnly;
+        }
+
+        Entry entry = new Entry(resource, type, readOnly, System.nanoTime() + timeToLive.getOrDefault(resource, 0L));
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+        return readOnly;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> List<R> cast(List<?> list)
+    {
+        return (List<R>) list;
+    }
+
+    private AtomicLong generation(String resource)
+    {
+        return generations.computeIfAbsent(resource, r -> new AtomicLong());
+    }
+
+    private static class Entry
+    {
+        private final String resource;
+        private final Class<?> type;
+        private final List<?> value;
+        private final long expiresAt;
+
+        private Entry(String resource, Class<?> type, List<?> value, long expiresAt)
+        {
+            this.resource = resource;
+            this.type = type;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.glookast.api.capture;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+@SuppressWarnings("WeakerAccess")
+public class CircuitBreaker
+{
+    public enum State
+    {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+
+    private final LongAdder trips = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probing;
+
+    CircuitBreaker(int failureThreshold, long openDuration, TimeUnit unit)
+    {
+        this(failureThreshold, openDuration, unit, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, long openDuration, TimeUnit unit, LongSupplier clock)
+    {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = unit.toNanos(openDuration);
+        this.clock = clock;
+    }
+
+    public synchronized State getState()
+    {
+        return state;
+    }
+
+    public long getTripCount()
+    {
+        return trips.sum();
+    }
+
+    public long getRejectedCount()
+    {
+        return rejected.sum();
+    }
+
+    // once the open period is over a single probe request is let through to test the node
+    synchronized boolean allow()
+    {
+        if (failureThreshold == 0 || state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            probing = false;
+        }
+        if (state == State.HALF_OPEN && !probing) {
+            probing = true;
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    synchronized long remainingOpen(TimeUnit unit)
+    {
+        return state == State.OPEN ? unit.convert(Math.max(0, openNanos - (clock.getAsLong() - openedAt)), TimeUnit.NANOSECONDS) : 0;
+    }
+
+    // returns CLOSED when this success closed an open circuit, null otherwise
+    synchronized State onSuccess()
+    {
+        State previous = state;
+        consecutiveFailures = 0;
+        probing = false;
+        state = State.CLOSED;
+        return previous != State.CLOSED ? state : null;
+    }
+
+    // the request failed for a reason that says nothing about the node, e.g. a local pool timeout
+    synchronized void onNeutral()
+    {
+        probing = false;
+    }
+
+    // returns the new state when this failure changed it, null otherwise
+    synchronized State onFailure()
+    {
+        if (failureThreshold == 0) {
+            return null;
+        }
+
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+            probing = false;
+            trips.increment();
+            return state;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,11 @@
+package com.glookast.api.capture;
+
+import java.io.IOException;
+
+public class CircuitBreakerOpenException extends IOException
+{
+    public CircuitBreakerOpenException(String message)
+    {
+        super(message);
+    }
+}
@@ -0,0 +1,79 @@
+package com.glookast.api.capture;
+
+import java.util.*;
+
+public class ClusterResult<T>
+{
+    private final List<NodeValue<T>> values;
+    private final Map<String, List<T>> valuesByNode;
+    private final Map<String, Throwable> failures;
+    private final Set<String> timedOut;
+
+    ClusterResult(Map<String, List<T>> valuesByNode, Map<String, Throwable> failures, Set<String> timedOut)
+    {
+        List<NodeValue<T>> values = new ArrayList<>();
+        for (Map.Entry<String, List<T>> e : valuesByNode.entrySet()) {
+            for (T value : e.getValue()) {
+                values.add(new NodeValue<>(e.getKey(), value));
+            }
+        }
+
+        this.values = Collections.unmodifiableList(values);
+        this.valuesByNode = Collections.unmodifiableMap(valuesByNode);
+        this.failures = Collections.unmodifiableMap(failures);
+        this.timedOut = Collections.unmodifiableSet(timedOut);
+    }
+
+    public List<NodeValue<T>> getValues()
+    {
+        return values;
+    }
+
+    public Map<String, List<T>> getValuesByNode()
+    {
+        return valuesByNode;
+    }
+
+    public Map<String, Throwable> getFailures()
+    {
+        return failures;
+    }
+
+    public Set<String> getTimedOut()
+    {
+        return timedOut;
+    }
+
+    public boolean isComplete()
+    {
+        return failures.isEmpty() && timedOut.isEmpty();
+    }
+
+    public static class NodeValue<T>
+    {
+        private final String node;
+        private final T value;
+
+        NodeValue(String node, T value)
+        {
+            this.node = node;
+            this.value = value;
+        }
+
+        public String getNode()
+        {
+            return node;
+        }
+
+        public T getValue()
+        {
+            return value;
+        }
+
+        @Override
+        public String toString()
+        {
+            return node + ": " + value;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.glookast.api.capture;
+
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+@SuppressWarnings("WeakerAccess")
+public class ConditionalRequestCache
+{
+    private final int maxEntries;
+    private final Set<String> resources;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder unchangedBody = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ConditionalRequestCache(int maxEntries, String... resources)
+    {
+        this.maxEntries = maxEntries;
+        this.resources = new HashSet<>(Arrays.asList(resources));
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+            {
+                return size() > ConditionalRequestCache.this.maxEntries;
+            }
+        };
+    }
+
+    public static ConditionalRequestCache forChannels()
+    {
+        return new ConditionalRequestCache(1024, "channels");
+    }
+
+    public Set<String> getResources()
+    {
+        return Collections.unmodifiableSet(resources);
+    }
+
+    public int getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    public long getNotModifiedCount()
+    {
+        return notModified.sum();
+    }
+
+    public long getUnchangedBodyCount()
+    {
+        return unchangedBody.sum();
+    }
+
+    public long getHitCount()
+    {
+        return notModified.sum() + unchangedBody.sum();
+    }
+
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    public double getHitRatio()
+    {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    boolean isCached(String resource)
+    {
+        return resources.contains(resource);
+    }
+
+    synchronized Entry get(String url)
+    {
+        return entries.get(url);
+    }
+
+    void prepare(HttpRequest request, Entry entry)
+    {
+        if (entry != null) {
+            if (entry.eTag != null) {
+                request.setHeader("If-None-Match", entry.eTag);
+            }
+            if (entry.lastModified != null) {
+                request.setHeader("If-Modified-Since", entry.lastModified);
+            }
+        }
+    }
+
+    // a hit hands out the list decoded on the miss without parsing again: it is unmodifiable and shared by every caller of
+    // the URL, so its elements must not be changed either
+    List<?> notModified(Entry entry)
+    {
+        notModified.increment();
+        return entry.value;
+    }
+
+    // the body still crossed the wire, but comparing bytes is far cheaper than decoding them again
+    List<?> unchangedBody(String url, Entry entry, HttpResponse response)
+    {
+        unchangedBody.increment();
+        put(url, new Entry(header(response, "ETag"), header(response, "Last-Modified"), entry.body, entry.type, entry.value));
+        return entry.value;
+    }
+
+    <R> List<R> modified(String url, byte[] body, HttpResponse response, Class<R> type, List<R> value)
+    {
+        misses.increment();
+        List<R> shared = Collections.unmodifiableList(value);
+        put(url, new Entry(header(response, "ETag"), header(response, "Last-Modified"), body, type, shared));
+        return shared;
+    }
+
+    private synchronized void put(String url, Entry entry)
+    {
+        entries.put(url, entry);
+    }
+
+    private static String header(HttpResponse response, String name)
+    {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    static class Entry
+    {
+        private final String eTag;
+        private final String lastModified;
+        private final byte[] body;
+        private final Class<?> type;
+        private final List<?> value;
+
+        private Entry(String eTag, String lastModified, byte[] body, Class<?> type, List<?> value)
+        {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.body = body;
+            this.type = type;
+            this.value = value;
+        }
+
+        // the same URL read as another type has to be decoded from the body
+        boolean holds(Class<?> type)
+        {
+            return this.type == type;
+        }
+
+        byte[] getBody()
+        {
+            return body;
+        }
+
+        boolean matches(byte[] body)
+        {
+            return Arrays.equals(this.body, body);
+        }
+    }
+}
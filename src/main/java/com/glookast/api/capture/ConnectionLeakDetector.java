@@ -0,0 +1,81 @@
+package com.glookast.api.capture;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+public class ConnectionLeakDetector
+{
+    static final Lease NO_LEASE = new Lease(null, null, 0, null);
+
+    private final long thresholdNanos;
+    private final Listener listener;
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+
+    public ConnectionLeakDetector(long threshold, TimeUnit unit, Listener listener)
+    {
+        this.thresholdNanos = unit.toNanos(threshold);
+        this.listener = listener;
+    }
+
+    public long getThreshold(TimeUnit unit)
+    {
+        return unit.convert(thresholdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public int getLeaseCount()
+    {
+        return leases.size();
+    }
+
+    Lease acquire(String description)
+    {
+        Lease lease = new Lease(this, description, System.nanoTime(), new Throwable("Connection leased for " + description));
+        leases.add(lease);
+        return lease;
+    }
+
+    void check()
+    {
+        long now = System.nanoTime();
+
+        for (Lease lease : leases) {
+            if (!lease.reported && now - lease.acquiredAt > thresholdNanos) {
+                lease.reported = true;
+                try {
+                    listener.onLeak(lease.description, TimeUnit.NANOSECONDS.toMillis(now - lease.acquiredAt), lease.callSite);
+                } catch (RuntimeException ignored) {
+                }
+            }
+        }
+    }
+
+    public interface Listener
+    {
+        void onLeak(String description, long heldMillis, Throwable callSite);
+    }
+
+    static class Lease
+    {
+        private final ConnectionLeakDetector detector;
+        private final String description;
+        private final long acquiredAt;
+        private final Throwable callSite;
+        private volatile boolean reported;
+
+        private Lease(ConnectionLeakDetector detector, String description, long acquiredAt, Throwable callSite)
+        {
+            this.detector = detector;
+            this.description = description;
+            this.acquiredAt = acquiredAt;
+            this.callSite = callSite;
+        }
+
+        void release()
+        {
+            if (detector != null) {
+                detector.leases.remove(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.glookast.api.capture;
+
+import java.util.concurrent.TimeUnit;
+
+@SuppressWarnings("WeakerAccess")
+public class ConnectionPoolConfig
+{
+    private int minConnections;
+    private int maxConnections;
+    private long leaseTimeoutMillis = -1;
+    private int socketTimeoutMillis = 5000;
+    private int slowLaneConnections;
+    private int realtimeConnections = 2;
+    private boolean prewarmRealtimeConnections;
+
+    private ConnectionPoolConfig(int minConnections, int maxConnections)
+    {
+        this.minConnections = minConnections;
+        this.maxConnections = maxConnections;
+        this.slowLaneConnections = Math.max(1, maxConnections / 4);
+    }
+
+    public static ConnectionPoolConfig fixed(int maxConnections)
+    {
+        return new ConnectionPoolConfig(maxConnections, maxConnections);
+    }
+
+    public static ConnectionPoolConfig adaptive(int minConnections, int maxConnections)
+    {
+        if (minConnections < 1 || minConnections > maxConnections) {
+            throw new IllegalArgumentException("minConnections must be between 1 and maxConnections");
+        }
+        return new ConnectionPoolConfig(minConnections, maxConnections);
+    }
+
+    public ConnectionPoolConfig leaseTimeout(long timeout, TimeUnit unit)
+    {
+        this.leaseTimeoutMillis = timeout < 0 ? -1 : unit.toMillis(timeout);
+        return this;
+    }
+
+    public ConnectionPoolConfig socketTimeout(long timeout, TimeUnit unit)
+    {
+        this.socketTimeoutMillis = (int) unit.toMillis(timeout);
+        return this;
+    }
+
+    public ConnectionPoolConfig slowLaneConnections(int slowLaneConnections)
+    {
+        if (slowLaneConnections < 1) {
+            throw new IllegalArgumentException("slowLaneConnections must be at least 1");
+        }
+        this.slowLaneConnections = slowLaneConnections;
+        return this;
+    }
+
+    public ConnectionPoolConfig realtimeConnections(int realtimeConnections)
+    {
+        if (realtimeConnections < 0) {
+            throw new IllegalArgumentException("realtimeConnections must not be negative");
+        }
+        this.realtimeConnections = realtimeConnections;
+        return this;
+    }
+
+    public ConnectionPoolConfig prewarmRealtimeConnections(boolean prewarmRealtimeConnections)
+    {
+        this.prewarmRealtimeConnections = prewarmRealtimeConnections;
+        return this;
+    }
+
+    public int getMinConnections()
+    {
+        return minConnections;
+    }
+
+    public int getMaxConnections()
+    {
+        return maxConnections;
+    }
+
+    public boolean isAdaptive()
+    {
+        return minConnections < maxConnections;
+    }
+
+    public long getLeaseTimeout(TimeUnit unit)
+    {
+        return leaseTimeoutMillis < 0 ? -1 : unit.convert(leaseTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public int getSocketTimeoutMillis()
+    {
+        return socketTimeoutMillis;
+    }
+
+    public int getSlowLaneConnections()
+    {
+        return slowLaneConnections;
+    }
+
+    public int getRealtimeConnections()
+    {
+        return realtimeConnections;
+    }
+
+    public boolean isPrewarmRealtimeConnections()
+    {
+        return prewarmRealtimeConnections;
+    }
+}
@@ -0,0 +1,11 @@
+package com.glookast.api.capture;
+
+import java.io.InterruptedIOException;
+
+public class DeadlineExceededException extends InterruptedIOException
+{
+    public DeadlineExceededException(String message)
+    {
+        super(message);
+    }
+}
@@ -0,0 +1,80 @@
+package com.glookast.api.capture;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+class EntityChannel implements ReadableByteChannel
+{
+    private final InputStream content;
+    private final ReadableByteChannel channel;
+    private final Closeable resource;
+
+    private boolean endOfStream;
+    private boolean closed;
+
+    EntityChannel(InputStream content, Closeable resource)
+    {
+        this.content = content;
+        this.channel = Channels.newChannel(content);
+        this.resource = resource;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException
+    {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+
+        int read = channel.read(dst);
+        if (read < 0) {
+            endOfStream = true;
+        }
+        return read;
+    }
+
+    long transferTo(OutputStream outputStream) throws IOException
+    {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+
+        long transferred = IOUtils.copyLarge(content, outputStream);
+        endOfStream = true;
+        return transferred;
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return !closed;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        // closing the content of a partially read entity drains it, so only release the exchange when stopping early
+        if (endOfStream) {
+            try {
+                content.close();
+            } finally {
+                resource.close();
+            }
+        } else {
+            resource.close();
+        }
+    }
+}
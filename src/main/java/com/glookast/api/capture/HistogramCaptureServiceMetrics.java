@@ -0,0 +1,136 @@
+package com.glookast.api.capture;
+
+import org.apache.http.pool.PoolStats;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class HistogramCaptureServiceMetrics implements CaptureServiceMetrics
+{
+    private final ConcurrentMap<String, ConcurrentMap<String, EndpointStats>> endpointStats = new ConcurrentHashMap<>();
+    private volatile PoolStats poolStats;
+
+    @Override
+    public void onRequest(String method, String endpoint, int status, long latencyNanos, long bytesOut, long bytesIn)
+    {
+        EndpointStats stats = stats(method, endpoint);
+        stats.latency.record(latencyNanos);
+        stats.bytesOut.add(bytesOut);
+        stats.bytesIn.add(bytesIn);
+        stats.statusCounts.incrementAndGet(status > 0 && status < EndpointStats.MAX_STATUS ? status : 0);
+    }
+
+    @Override
+    public void onApiException(String method, String endpoint, ApiException exception)
+    {
+        stats(method, endpoint).apiExceptions.increment();
+    }
+
+    @Override
+    public void onIOException(String method, String endpoint, IOException exception)
+    {
+        stats(method, endpoint).ioExceptions.increment();
+    }
+
+    @Override
+    public void onPoolStats(PoolStats poolStats)
+    {
+        this.poolStats = poolStats;
+    }
+
+    public PoolStats getPoolStats()
+    {
+        return poolStats;
+    }
+
+    public EndpointStats getEndpointStats(String method, String endpoint)
+    {
+        Map<String, EndpointStats> stats = endpointStats.get(method);
+        return stats != null ? stats.get(endpoint) : null;
+    }
+
+    public Map<String, EndpointStats> getEndpointStats()
+    {
+        Map<String, EndpointStats> result = new LinkedHashMap<>();
+        for (Map.Entry<String, ConcurrentMap<String, EndpointStats>> e : endpointStats.entrySet()) {
+            for (Map.Entry<String, EndpointStats> stats : e.getValue().entrySet()) {
+                result.put(e.getKey() + " " + stats.getKey(), stats.getValue());
+            }
+        }
+        return result;
+    }
+
+    public void reset()
+    {
+        endpointStats.clear();
+    }
+
+    private EndpointStats stats(String method, String endpoint)
+    {
+        ConcurrentMap<String, EndpointStats> stats = endpointStats.get(method);
+        if (stats == null) {
+            stats = endpointStats.computeIfAbsent(method, m -> new ConcurrentHashMap<>());
+        }
+
+        EndpointStats result = stats.get(endpoint);
+        if (result == null) {
+            result = stats.computeIfAbsent(endpoint, e -> new EndpointStats());
+        }
+        return result;
+    }
+
+    public static class EndpointStats
+    {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder bytesOut = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private static final int MAX_STATUS = 600;
+
+        private final AtomicLongArray statusCounts = new AtomicLongArray(MAX_STATUS);
+        private final LongAdder apiExceptions = new LongAdder();
+        private final LongAdder ioExceptions = new LongAdder();
+
+        public LatencyHistogram getLatency()
+        {
+            return latency;
+        }
+
+        public long getBytesOut()
+        {
+            return bytesOut.sum();
+        }
+
+        public long getBytesIn()
+        {
+            return bytesIn.sum();
+        }
+
+        public Map<Integer, Long> getStatusCounts()
+        {
+            Map<Integer, Long> result = new LinkedHashMap<>();
+            for (int status = 0; status < MAX_STATUS; status++) {
+                long count = statusCounts.get(status);
+                if (count > 0) {
+                    result.put(status, count);
+                }
+            }
+            return Collections.unmodifiableMap(result);
+        }
+
+        public long getApiExceptions()
+        {
+            return apiExceptions.sum();
+        }
+
+        public long getIOExceptions()
+        {
+            return ioExceptions.sum();
+        }
+    }
+}
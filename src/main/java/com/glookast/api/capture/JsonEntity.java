@@ -0,0 +1,93 @@
+package com.glookast.api.capture;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+class JsonEntity extends AbstractHttpEntity
+{
+    private final ObjectWriter writer;
+    private final Object value;
+
+    private byte[] buffer;
+    private volatile long bytesWritten;
+
+    // buffered bodies are sent with a Content-Length, chunked bodies are serialized straight onto the socket
+    JsonEntity(ObjectWriter writer, Object value, boolean chunked)
+    {
+        this.writer = writer;
+        this.value = value;
+        setContentType(ContentType.APPLICATION_JSON.toString());
+        setChunked(chunked);
+    }
+
+    @Override
+    public boolean isRepeatable()
+    {
+        return true;
+    }
+
+    @Override
+    public long getContentLength()
+    {
+        if (isChunked()) {
+            return -1;
+        }
+        try {
+            return buffer().length;
+        } catch (IOException e) {
+            // writeTo will serialize again and report the failure
+            return -1;
+        }
+    }
+
+    @Override
+    public InputStream getContent() throws IOException
+    {
+        byte[] bytes = isChunked() ? writer.writeValueAsBytes(value) : buffer();
+        bytesWritten = bytes.length;
+        return new ByteArrayInputStream(bytes);
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException
+    {
+        if (!isChunked()) {
+            byte[] bytes = buffer();
+            outputStream.write(bytes);
+            outputStream.flush();
+            bytesWritten = bytes.length;
+            return;
+        }
+
+        CountingOutputStream countingOutputStream = new CountingOutputStream(outputStream);
+        writer.writeValue(countingOutputStream, value);
+        countingOutputStream.flush();
+        bytesWritten = countingOutputStream.getByteCount();
+    }
+
+    long getBytesWritten()
+    {
+        return bytesWritten;
+    }
+
+    @Override
+    public boolean isStreaming()
+    {
+        return false;
+    }
+
+    private synchronized byte[] buffer() throws IOException
+    {
+        if (buffer == null) {
+            buffer = writer.writeValueAsBytes(value);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,91 @@
+package com.glookast.api.capture;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+class JsonStreamIterator<R> implements Iterator<R>, Closeable
+{
+    private final JsonParser parser;
+    private final ObjectReader reader;
+    private final Closeable resource;
+
+    private boolean isArray;
+    private JsonToken token;
+    private boolean closed;
+
+    JsonStreamIterator(JsonParser parser, ObjectReader reader, Closeable resource) throws IOException
+    {
+        this.parser = parser;
+        this.reader = reader;
+        this.resource = resource;
+
+        token = parser.nextToken();
+        if (token == JsonToken.START_ARRAY) {
+            isArray = true;
+            token = parser.nextToken();
+        }
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if (closed) {
+            return false;
+        }
+        if (token == null || token == JsonToken.END_ARRAY) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public R next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        try {
+            R value = reader.readValue(parser);
+            token = isArray ? parser.nextToken() : null;
+            return value;
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        // closing the parser drains the remaining body, so abort the exchange first when stopping early
+        if (token == null || token == JsonToken.END_ARRAY) {
+            closeQuietly(parser);
+            closeQuietly(resource);
+        } else {
+            closeQuietly(resource);
+            closeQuietly(parser);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable)
+    {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.glookast.api.capture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.glookast.commons.capture.CaptureJob;
+import com.glookast.commons.capture.NotificationEndpoint;
+import com.glookast.commons.capture.TransferJob;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static java.net.HttpURLConnection.*;
+
+@SuppressWarnings("WeakerAccess")
+public class NotificationReceiver
+{
+    private static final Logger LOGGER = Logger.getLogger(NotificationReceiver.class.getName());
+    private static final long RECONCILE_DELAY_MILLIS = 100;
+    private static final int MAX_BACKOFF_SHIFT = 6;
+
+    private final CaptureService captureService;
+    private final ObjectMapper objectMapper;
+    private final CaptureEventListener listener;
+    private final String callbackHost;
+    private final InetAddress bindAddress;
+    private final int bindPort;
+    private final Function<String, NotificationEndpoint> endpointFactory;
+    private final long healthCheckIntervalMillis;
+
+    private final String contextPath = "/notifications/" + UUID.randomUUID();
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean reconcilePending = new AtomicBoolean();
+
+    private final Map<UUID, JsonNode> captureJobs = new HashMap<>();
+    private final Map<String, JsonNode> transferJobs = new HashMap<>();
+
+    private HttpServer server;
+    private volatile UUID notificationEndpointId;
+    private volatile boolean connected;
+    private int registrationFailures;
+    private long nextRegistrationAt;
+
+    public NotificationReceiver(CaptureService captureService, String callbackHost, CaptureEventListener listener)
+    {
+        this(captureService, callbackHost, 0, listener);
+    }
+
+    public NotificationReceiver(CaptureService captureService, String callbackHost, int bindPort, CaptureEventListener listener)
+    {
+        this(captureService, callbackHost, bindPort, listener, null, 30, TimeUnit.SECONDS);
+    }
+
+    // bindAddress limits the callback server to one interface, null listens on all of them
+    public NotificationReceiver(CaptureService captureService, String callbackHost, InetAddress bindAddress, int bindPort, CaptureEventListener listener)
+    {
+        this(captureService, callbackHost, bindAddress, bindPort, listener, null, 30, TimeUnit.SECONDS);
+    }
+
+    public NotificationReceiver(CaptureService captureService, String callbackHost, int bindPort, CaptureEventListener listener,
+                                Function<String, NotificationEndpoint> endpointFactory, long healthCheckInterval, TimeUnit unit)
+    {
+        this(captureService, callbackHost, null, bindPort, listener, endpointFactory, healthCheckInterval, unit);
+    }
+
+    public NotificationReceiver(CaptureService captureService, String callbackHost, InetAddress bindAddress, int bindPort, CaptureEventListener listener,
+                                Function<String, NotificationEndpoint> endpointFactory, long healthCheckInterval, TimeUnit unit)
+    {
+        this.captureService = captureService;
+        this.objectMapper = captureService.getObjectMapper();
+        this.listener = listener;
+        this.callbackHost = callbackHost;
+        this.bindAddress = bindAddress;
+        this.bindPort = bindPort;
+        this.endpointFactory = endpointFactory != null ? endpointFactory : this::createNotificationEndpoint;
+        this.healthCheckIntervalMillis = unit.toMillis(healthCheckInterval);
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "NotificationReceiver-" + captureService.getHostname());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public synchronized void start() throws IOException, ApiException
+    {
+        if (server != null) {
+            throw new IllegalStateException("NotificationReceiver already started");
+        }
+
+        server = HttpServer.create(new InetSocketAddress(bindAddress, bindPort), 0);
+        server.createContext(contextPath, this::handle);
+        server.start();
+
+        try {
+            register();
+        } catch (IOException | ApiException | RuntimeException e) {
+            server.stop(0);
+            server = null;
+            throw e;
+        }
+
+        executor.execute(this::reconcile);
+        executor.scheduleWithFixedDelay(this::checkRegistration, healthCheckIntervalMillis, healthCheckIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void close()
+    {
+        executor.shutdownNow();
+
+        UUID notificationEndpointId = this.notificationEndpointId;
+        if (notificationEndpointId != null) {
+            try {
+                captureService.deleteNotificationEndpoint(notificationEndpointId);
+            } catch (IOException | ApiException ignored) {
+            }
+            this.notificationEndpointId = null;
+        }
+
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    public String getCallbackUrl()
+    {
+        HttpServer server = this.server;
+        return server != null ? "http://" + callbackHost + ":" + server.getAddress().getPort() + contextPath : null;
+    }
+
+    public InetAddress getBindAddress()
+    {
+        return bindAddress;
+    }
+
+    public UUID getNotificationEndpointId()
+    {
+        return notificationEndpointId;
+    }
+
+    public boolean isConnected()
+    {
+        return connected;
+    }
+
+    public void reconcileNow()
+    {
+        requestReconcile();
+    }
+
+    private NotificationEndpoint createNotificationEndpoint(String callbackUrl)
+    {
+        return objectMapper.convertValue(Collections.singletonMap("url", callbackUrl), NotificationEndpoint.class);
+    }
+
+    // endpoints this receiver left behind, e.g. by a registration whose id never came back, are removed first so they do not pile up
+    private void register() throws IOException, ApiException
+    {
+        String callbackUrl = getCallbackUrl();
+        List<NotificationEndpoint> notificationEndpoints = captureService.getNotificationEndpoints();
+        if (notificationEndpoints != null) {
+            for (NotificationEndpoint stale : notificationEndpoints) {
+                if (stale != null && stale.getId() != null && callbackUrl.equals(stale.getUrl())) {
+                    captureService.deleteNotificationEndpoint(stale.getId());
+                }
+            }
+        }
+        notificationEndpointId = null;
+
+        NotificationEndpoint notificationEndpoint = captureService.setNotificationEndpoint(endpointFactory.apply(callbackUrl));
+        if (notificationEndpoint == null || notificationEndpoint.getId() == null) {
+            throw new IOException("No id returned for notification endpoint " + callbackUrl);
+        }
+        notificationEndpointId = notificationEndpoint.getId();
+        connected = true;
+    }
+
+    private void checkRegistration()
+    {
+        try {
+            NotificationEndpoint notificationEndpoint = notificationEndpointId != null ? getNotificationEndpoint(notificationEndpointId) : null;
+            if (notificationEndpoint != null) {
+                if (!connected) {
+                    connected = true;
+                    reconcile();
+                }
+                return;
+            }
+        } catch (IOException | ApiException e) {
+            connected = false;
+            return;
+        }
+
+        // a failed registration is retried after a growing number of health checks and only reported once
+        if (registrationFailures > 0 && System.nanoTime() - nextRegistrationAt < 0) {
+            return;
+        }
+        try {
+            register();
+            registrationFailures = 0;
+            reconcile();
+        } catch (IOException | ApiException | RuntimeException e) {
+            connected = false;
+            if (registrationFailures++ == 0) {
+                LOGGER.log(Level.WARNING, "Registering notification endpoint " + getCallbackUrl() + " failed, retrying with backoff", e);
+            }
+            nextRegistrationAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(healthCheckIntervalMillis << Math.min(registrationFailures, MAX_BACKOFF_SHIFT));
+        }
+    }
+
+    private NotificationEndpoint getNotificationEndpoint(UUID notificationEndpointId) throws IOException, ApiException
+    {
+        try {
+            return captureService.getNotificationEndpoint(notificationEndpointId);
+        } catch (ApiException e) {
+            if (e.getApiError().getStatus() == HTTP_NOT_FOUND) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        int status = HTTP_NO_CONTENT;
+
+        try {
+            JsonNode notification = objectMapper.readTree(exchange.getRequestBody());
+            executor.execute(() -> dispatch(notification));
+        } catch (IOException e) {
+            status = HTTP_BAD_REQUEST;
+        } catch (RuntimeException e) {
+            status = HTTP_UNAVAILABLE;
+        } finally {
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        }
+    }
+
+    private void dispatch(JsonNode notification)
+    {
+        JsonNode captureJobNode = notification != null ? notification.get("captureJob") : null;
+        JsonNode transferJobNode = notification != null ? notification.get("transferJob") : null;
+
+        try {
+            if (captureJobNode != null && captureJobNode.isObject()) {
+                CaptureJob captureJob = objectMapper.treeToValue(captureJobNode, CaptureJob.class);
+                captureService.observe(captureJob);
+                update(captureJob);
+                return;
+            }
+            if (transferJobNode != null && transferJobNode.isObject()) {
+                update(objectMapper.treeToValue(transferJobNode, TransferJob.class));
+                return;
+            }
+        } catch (IOException ignored) {
+        }
+
+        // notification without a recognised payload, fetch the current state instead
+        requestReconcile();
+    }
+
+    private void requestReconcile()
+    {
+        if (reconcilePending.compareAndSet(false, true)) {
+            executor.schedule(() -> {
+                reconcilePending.set(false);
+                reconcile();
+            }, RECONCILE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void reconcile()
+    {
+        try {
+            Set<UUID> captureJobIds = new HashSet<>();
+            try (Stream<CaptureJob> stream = captureService.streamCaptureJobs()) {
+                stream.forEach(captureJob -> {
+                    captureJobIds.add(captureJob.getId());
+                    update(captureJob);
+                });
+            }
+
+            Set<String> transferJobIds = new HashSet<>();
+            try (Stream<TransferJob> stream = captureService.streamTransferJobs()) {
+                stream.forEach(transferJob -> {
+                    transferJobIds.add(transferJob.getId());
+                    update(transferJob);
+                });
+            }
+
+            for (Iterator<UUID> it = captureJobs.keySet().iterator(); it.hasNext(); ) {
+                UUID captureJobId = it.next();
+                if (!captureJobIds.contains(captureJobId)) {
+                    it.remove();
+                    fire(() -> listener.onCaptureJobRemoved(captureJobId));
+                }
+            }
+            for (Iterator<String> it = transferJobs.keySet().iterator(); it.hasNext(); ) {
+                String transferJobId = it.next();
+                if (!transferJobIds.contains(transferJobId)) {
+                    it.remove();
+                    fire(() -> listener.onTransferJobRemoved(transferJobId));
+                }
+            }
+
+            fire(listener::onReconciled);
+        } catch (IOException | ApiException | RuntimeException e) {
+            connected = false;
+        }
+    }
+
+    private void update(CaptureJob captureJob)
+    {
+        JsonNode state = objectMapper.valueToTree(captureJob);
+        if (captureJob.getId() != null && !state.equals(captureJobs.put(captureJob.getId(), state))) {
+            fire(() -> listener.onCaptureJobChanged(captureJob));
+        }
+    }
+
+    private void update(TransferJob transferJob)
+    {
+        JsonNode state = objectMapper.valueToTree(transferJob);
+        if (transferJob.getId() != null && !state.equals(transferJobs.put(transferJob.getId(), state))) {
+            fire(() -> listener.onTransferJobChanged(transferJob));
+        }
+    }
+
+    private static void fire(Runnable callback)
+    {
+        try {
+            callback.run();
+        } catch (RuntimeException ignored) {
+        }
+    }
+}
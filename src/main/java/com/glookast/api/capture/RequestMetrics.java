@@ -0,0 +1,174 @@
+package com.glookast.api.capture;
+
+import com.glookast.api.capture.CaptureService.HttpMethod;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+class RequestMetrics
+{
+    private static final RequestMetrics NONE = new RequestMetrics(null, null, null, null);
+
+    private final CaptureServiceMetrics metrics;
+    private final String method;
+    private final String endpoint;
+    private final HttpRequest request;
+    private final long startTime;
+
+    private int status;
+    private CountingEntity responseEntity;
+    private boolean completed;
+
+    private RequestMetrics(CaptureServiceMetrics metrics, String method, String endpoint, HttpRequest request)
+    {
+        this.metrics = metrics;
+        this.method = method;
+        this.endpoint = endpoint;
+        this.request = request;
+        this.startTime = System.nanoTime();
+    }
+
+    static RequestMetrics start(CaptureServiceMetrics metrics, HttpMethod method, String path, HttpRequest request)
+    {
+        if (metrics == null) {
+            return NONE;
+        }
+        return new RequestMetrics(metrics, method.name(), endpoint(path), request);
+    }
+
+    static String endpoint(String path)
+    {
+        StringBuilder endpoint = new StringBuilder(path.length());
+
+        int start = 0;
+        while (start <= path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+
+            if (start > 0) {
+                endpoint.append('/');
+            }
+            if (isIdentifier(path, start, end)) {
+                endpoint.append("{id}");
+            } else {
+                endpoint.append(path, start, end);
+            }
+
+            start = end + 1;
+        }
+
+        return endpoint.toString();
+    }
+
+    private static boolean isIdentifier(String path, int start, int end)
+    {
+        if (start == end) {
+            return false;
+        }
+
+        boolean isNumber = true;
+        for (int i = start; i < end && isNumber; i++) {
+            isNumber = Character.isDigit(path.charAt(i));
+        }
+        if (isNumber) {
+            return true;
+        }
+
+        // canonical UUID representation, 8-4-4-4-12
+        if (end - start != 36) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            int offset = i - start;
+            boolean isDash = offset == 8 || offset == 13 || offset == 18 || offset == 23;
+            if (isDash ? c != '-' : Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void received(HttpResponse response)
+    {
+        if (metrics == null) {
+            return;
+        }
+
+        status = response.getStatusLine().getStatusCode();
+
+        if (response.getEntity() != null) {
+            responseEntity = new CountingEntity(response.getEntity());
+            response.setEntity(responseEntity);
+        }
+    }
+
+    void failed(ApiException exception)
+    {
+        if (metrics != null) {
+            metrics.onApiException(method, endpoint, exception);
+        }
+    }
+
+    void failed(IOException exception)
+    {
+        if (metrics != null) {
+            metrics.onIOException(method, endpoint, exception);
+        }
+    }
+
+    void completed()
+    {
+        if (metrics == null || completed || status == 0) {
+            return;
+        }
+        completed = true;
+
+        long bytesOut = 0;
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity requestEntity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (requestEntity instanceof JsonEntity) {
+                bytesOut = ((JsonEntity) requestEntity).getBytesWritten();
+            }
+        }
+        long bytesIn = responseEntity != null ? responseEntity.getByteCount() : 0;
+
+        metrics.onRequest(method, endpoint, status, System.nanoTime() - startTime, bytesOut, bytesIn);
+    }
+
+    private static class CountingEntity extends HttpEntityWrapper
+    {
+        private CountingInputStream content;
+
+        CountingEntity(HttpEntity wrappedEntity)
+        {
+            super(wrappedEntity);
+        }
+
+        @Override
+        public synchronized InputStream getContent() throws IOException
+        {
+            if (content == null) {
+                InputStream wrappedContent = super.getContent();
+                if (wrappedContent == null) {
+                    return null;
+                }
+                content = new CountingInputStream(wrappedContent);
+            }
+            return content;
+        }
+
+        synchronized long getByteCount()
+        {
+            return content != null ? content.getByteCount() : 0;
+        }
+    }
+}
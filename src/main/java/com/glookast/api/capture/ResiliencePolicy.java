@@ -0,0 +1,130 @@
+package com.glookast.api.capture;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+@SuppressWarnings("WeakerAccess")
+public class ResiliencePolicy
+{
+    // status reads a UI polls continuously; everything else is sent once
+    private static final Pattern STATUS_READS = Pattern.compile("channels/\\d+(/timecodes|/playout|/vtr)?|capture-jobs/[0-9a-fA-F-]{36}");
+
+    private int maxRetries = 2;
+    private long initialBackoffMillis = 100;
+    private long maxBackoffMillis = 2000;
+    private int failureThreshold = 5;
+    private long openMillis = 10000;
+    private long hedgeDelayMillis = -1;
+    private Pattern hedgedPaths = STATUS_READS;
+
+    private ResiliencePolicy()
+    {
+    }
+
+    public static ResiliencePolicy defaults()
+    {
+        return new ResiliencePolicy();
+    }
+
+    public static ResiliencePolicy none()
+    {
+        return new ResiliencePolicy().maxRetries(0).failureThreshold(0);
+    }
+
+    public ResiliencePolicy maxRetries(int maxRetries)
+    {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries must not be negative");
+        }
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    public ResiliencePolicy backoff(long initial, long max, TimeUnit unit)
+    {
+        if (initial < 0 || max < initial) {
+            throw new IllegalArgumentException("backoff must satisfy 0 <= initial <= max");
+        }
+        this.initialBackoffMillis = unit.toMillis(initial);
+        this.maxBackoffMillis = unit.toMillis(max);
+        return this;
+    }
+
+    // consecutive failures before the circuit opens, 0 disables the breaker
+    public ResiliencePolicy failureThreshold(int failureThreshold)
+    {
+        if (failureThreshold < 0) {
+            throw new IllegalArgumentException("failureThreshold must not be negative");
+        }
+        this.failureThreshold = failureThreshold;
+        return this;
+    }
+
+    public ResiliencePolicy openDuration(long duration, TimeUnit unit)
+    {
+        this.openMillis = unit.toMillis(duration);
+        return this;
+    }
+
+    public ResiliencePolicy hedgeDelay(long delay, TimeUnit unit)
+    {
+        this.hedgeDelayMillis = delay < 0 ? -1 : unit.toMillis(delay);
+        return this;
+    }
+
+    public ResiliencePolicy hedgedPaths(Pattern hedgedPaths)
+    {
+        this.hedgedPaths = hedgedPaths;
+        return this;
+    }
+
+    public int getMaxRetries()
+    {
+        return maxRetries;
+    }
+
+    public long getInitialBackoff(TimeUnit unit)
+    {
+        return unit.convert(initialBackoffMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public long getMaxBackoff(TimeUnit unit)
+    {
+        return unit.convert(maxBackoffMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public int getFailureThreshold()
+    {
+        return failureThreshold;
+    }
+
+    public long getOpenDuration(TimeUnit unit)
+    {
+        return unit.convert(openMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public long getHedgeDelay(TimeUnit unit)
+    {
+        return hedgeDelayMillis < 0 ? -1 : unit.convert(hedgeDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public Pattern getHedgedPaths()
+    {
+        return hedgedPaths;
+    }
+
+    boolean isHedged(String path)
+    {
+        return hedgeDelayMillis >= 0 && hedgedPaths != null && hedgedPaths.matcher(path).matches();
+    }
+
+    // full jitter: a random delay up to the exponential bound keeps retrying clients from synchronising
+    long backoffMillis(int attempt, double random)
+    {
+        long bound = initialBackoffMillis << Math.min(attempt, 20);
+        if (bound <= 0 || bound > maxBackoffMillis) {
+            bound = maxBackoffMillis;
+        }
+        return (long) (bound * random);
+    }
+}
@@ -0,0 +1,413 @@
+package com.glookast.api.capture;
+
+import com.glookast.commons.capture.CaptureJob;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+@SuppressWarnings("WeakerAccess")
+public class ThumbnailCache
+{
+    private static final String SUFFIX = ".thumb";
+    private static final int MAX_TRACKED_STATUSES = 65536;
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final long maxMemoryBytes;
+    private final Path directory;
+    private final long maxDiskBytes;
+
+    private final LinkedHashMap<UUID, MemoryEntry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<UUID, DiskEntry> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+
+    private final LinkedHashMap<UUID, String> statuses = new LinkedHashMap<UUID, String>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, String> eldest)
+        {
+            return size() > MAX_TRACKED_STATUSES;
+        }
+    };
+
+    // an invalidation only drops in-flight fills for jobs that hash to the same stripe
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ThumbnailCache(long maxMemoryBytes)
+    {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = null;
+        this.maxDiskBytes = 0;
+    }
+
+    public ThumbnailCache(long maxMemoryBytes, Path directory, long maxDiskBytes) throws IOException
+    {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = Files.createDirectories(directory);
+        this.maxDiskBytes = maxDiskBytes;
+
+        // pick up thumbnails stored by a previous run, oldest first so they are evicted first
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparing(ThumbnailCache::lastModified));
+
+        synchronized (this) {
+            for (Path file : files) {
+                UUID captureJobId = captureJobId(file);
+                if (captureJobId != null) {
+                    long size = Files.size(file);
+                    disk.put(captureJobId, new DiskEntry(file, size, status(file)));
+                    diskBytes += size;
+                }
+            }
+            evictDisk();
+        }
+    }
+
+    public long getMaxMemoryBytes()
+    {
+        return maxMemoryBytes;
+    }
+
+    public long getMaxDiskBytes()
+    {
+        return maxDiskBytes;
+    }
+
+    public Path getDirectory()
+    {
+        return directory;
+    }
+
+    public synchronized long getMemoryBytes()
+    {
+        return memoryBytes;
+    }
+
+    public synchronized long getDiskBytes()
+    {
+        return diskBytes;
+    }
+
+    public long getMemoryHitCount()
+    {
+        return memoryHits.sum();
+    }
+
+    public long getDiskHitCount()
+    {
+        return diskHits.sum();
+    }
+
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    // a thumbnail is kept only while the job is still in the status it was cached in
+    public void observe(CaptureJob captureJob)
+    {
+        if (captureJob == null || captureJob.getId() == null || captureJob.getStatus() == null) {
+            return;
+        }
+
+        UUID captureJobId = captureJob.getId();
+        String status = String.valueOf(captureJob.getStatus());
+
+        boolean stale;
+        synchronized (this) {
+            statuses.put(captureJobId, status);
+            stale = isStale(captureJobId, status);
+        }
+
+        if (stale) {
+            invalidate(captureJobId);
+        }
+    }
+
+    public void invalidate(UUID captureJobId)
+    {
+        generations.incrementAndGet(stripe(captureJobId));
+
+        DiskEntry removed;
+        synchronized (this) {
+            MemoryEntry entry = memory.remove(captureJobId);
+            if (entry != null) {
+                memoryBytes -= entry.thumbnail.length;
+            }
+            removed = disk.remove(captureJobId);
+            if (removed != null) {
+                diskBytes -= removed.size;
+            }
+        }
+        if (removed != null) {
+            delete(removed.file);
+        }
+    }
+
+    public void clear()
+    {
+        for (int i = 0; i < GENERATION_STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+
+        List<DiskEntry> removed;
+        synchronized (this) {
+            memory.clear();
+            memoryBytes = 0;
+            removed = new ArrayList<>(disk.values());
+            disk.clear();
+            diskBytes = 0;
+        }
+        removed.forEach(entry -> delete(entry.file));
+    }
+
+    long currentGeneration(UUID captureJobId)
+    {
+        return generations.get(stripe(captureJobId));
+    }
+
+    // read-only view, heap backed for the memory tier and memory mapped for the disk tier
+    ByteBuffer get(UUID captureJobId)
+    {
+        DiskEntry entry;
+        synchronized (this) {
+            String status = statuses.get(captureJobId);
+            if (status != null && isStale(captureJobId, status)) {
+                entry = null;
+            } else {
+                MemoryEntry memoryEntry = memory.get(captureJobId);
+                if (memoryEntry != null) {
+                    memoryHits.increment();
+                    return ByteBuffer.wrap(memoryEntry.thumbnail).asReadOnlyBuffer();
+                }
+                entry = disk.get(captureJobId);
+                if (entry != null && entry.mapped != null) {
+                    diskHits.increment();
+                    return entry.mapped.duplicate();
+                }
+            }
+        }
+
+        if (entry == null) {
+            if (isCached(captureJobId)) {
+                invalidate(captureJobId);
+            }
+            misses.increment();
+            return null;
+        }
+
+        ByteBuffer mapped = map(captureJobId, entry);
+        if (mapped == null) {
+            misses.increment();
+            return null;
+        }
+
+        diskHits.increment();
+        return mapped.duplicate();
+    }
+
+    void put(UUID captureJobId, long generation, byte[] thumbnail)
+    {
+        int stripe = stripe(captureJobId);
+        if (thumbnail == null || generations.get(stripe) != generation) {
+            return;
+        }
+
+        // the caller keeps using its array, the cache must not see later changes to it
+        byte[] copy = thumbnail.clone();
+
+        String status;
+        synchronized (this) {
+            status = statuses.get(captureJobId);
+        }
+
+        Path file = directory != null && copy.length <= maxDiskBytes ? write(captureJobId, status, copy) : null;
+
+        DiskEntry replaced = null;
+        synchronized (this) {
+            if (generations.get(stripe) != generation) {
+                if (file != null) {
+                    delete(file);
+                }
+                return;
+            }
+            if (file != null) {
+                replaced = disk.put(captureJobId, new DiskEntry(file, copy.length, status));
+                diskBytes += copy.length - (replaced != null ? replaced.size : 0);
+                evictDisk();
+            } else if ((replaced = disk.remove(captureJobId)) != null) {
+                diskBytes -= replaced.size;
+            }
+            putMemory(captureJobId, new MemoryEntry(copy, status));
+        }
+        if (replaced != null && !replaced.file.equals(file)) {
+            delete(replaced.file);
+        }
+    }
+
+    private boolean isStale(UUID captureJobId, String status)
+    {
+        MemoryEntry memoryEntry = memory.get(captureJobId);
+        DiskEntry diskEntry = disk.get(captureJobId);
+        return (memoryEntry != null && !status.equals(memoryEntry.status)) || (diskEntry != null && !status.equals(diskEntry.status));
+    }
+
+    private synchronized boolean isCached(UUID captureJobId)
+    {
+        return memory.containsKey(captureJobId) || disk.containsKey(captureJobId);
+    }
+
+    private void putMemory(UUID captureJobId, MemoryEntry entry)
+    {
+        if (entry.thumbnail.length > maxMemoryBytes) {
+            return;
+        }
+
+        MemoryEntry previous = memory.put(captureJobId, entry);
+        memoryBytes += entry.thumbnail.length - (previous != null ? previous.thumbnail.length : 0);
+
+        Iterator<MemoryEntry> it = memory.values().iterator();
+        while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+            memoryBytes -= it.next().thumbnail.length;
+            it.remove();
+        }
+    }
+
+    private void evictDisk()
+    {
+        Iterator<DiskEntry> it = disk.values().iterator();
+        while (diskBytes > maxDiskBytes && it.hasNext()) {
+            DiskEntry eldest = it.next();
+            diskBytes -= eldest.size;
+            it.remove();
+            delete(eldest.file);
+        }
+    }
+
+    // the mapping is kept with the entry, so later hits are served from the page cache without a copy
+    private ByteBuffer map(UUID captureJobId, DiskEntry entry)
+    {
+        try (FileChannel channel = FileChannel.open(entry.file, StandardOpenOption.READ)) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            synchronized (this) {
+                if (disk.get(captureJobId) == entry) {
+                    entry.mapped = mapped;
+                }
+            }
+            return mapped;
+        } catch (NoSuchFileException e) {
+            synchronized (this) {
+                if (disk.remove(captureJobId, entry)) {
+                    diskBytes -= entry.size;
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private Path write(UUID captureJobId, String status, byte[] thumbnail)
+    {
+        Path temp = directory.resolve(captureJobId + "." + Thread.currentThread().getId() + ".tmp");
+        Path file = directory.resolve(captureJobId + (status != null ? "." + status : "") + SUFFIX);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(thumbnail);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return file;
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+            return null;
+        }
+    }
+
+    private static void delete(Path file)
+    {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static int stripe(UUID captureJobId)
+    {
+        return captureJobId.hashCode() & (GENERATION_STRIPES - 1);
+    }
+
+    // files are named <capture job id>[.<status>].thumb
+    private static UUID captureJobId(Path file)
+    {
+        String name = file.getFileName().toString();
+        int end = name.indexOf('.');
+        try {
+            return UUID.fromString(name.substring(0, end));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String status(Path file)
+    {
+        String name = file.getFileName().toString();
+        int start = name.indexOf('.') + 1;
+        int end = name.length() - SUFFIX.length();
+        return start < end ? name.substring(start, end) : null;
+    }
+
+    private static FileTime lastModified(Path file)
+    {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static class MemoryEntry
+    {
+        private final byte[] thumbnail;
+        private final String status;
+
+        private MemoryEntry(byte[] thumbnail, String status)
+        {
+            this.thumbnail = thumbnail;
+            this.status = status;
+        }
+    }
+
+    private static class DiskEntry
+    {
+        private final Path file;
+        private final long size;
+        private final String status;
+        private ByteBuffer mapped;
+
+        private DiskEntry(Path file, long size, String status)
+        {
+            this.file = file;
+            this.size = size;
+            this.status = status;
+        }
+    }
+}
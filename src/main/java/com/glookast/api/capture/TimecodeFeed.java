@@ -0,0 +1,344 @@
+package com.glookast.api.capture;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.glookast.commons.timecode.Timecode;
+import com.glookast.commons.timecode.TimecodeCollection;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+@SuppressWarnings("WeakerAccess")
+public class TimecodeFeed
+{
+    private static final long MAX_ERROR_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final int MAX_READ_ATTEMPTS = 4;
+
+    private final CaptureService captureService;
+    private final int channelId;
+    private final double framesPerSecond;
+    private final long pollIntervalNanos;
+
+    private final Slot[] slots;
+    private final int mask;
+    private final Object publishLock = new Object();
+    private volatile long published = -1;
+
+    private final LongAdder errors = new LongAdder();
+
+    private Thread poller;
+    private volatile boolean running;
+
+    public TimecodeFeed(CaptureService captureService, int channelId, double framesPerSecond)
+    {
+        this(captureService, channelId, framesPerSecond, 64, (long) (TimeUnit.SECONDS.toNanos(1) / framesPerSecond), TimeUnit.NANOSECONDS);
+    }
+
+    public TimecodeFeed(CaptureService captureService, int channelId, double framesPerSecond, int capacity, long pollInterval, TimeUnit unit)
+    {
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("framesPerSecond must be positive");
+        }
+        // the poller rewrites the slot after the latest one, a single slot would hide the latest sample for the whole round trip
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two of at least 2");
+        }
+
+        this.captureService = captureService;
+        this.channelId = channelId;
+        this.framesPerSecond = framesPerSecond;
+        this.pollIntervalNanos = unit.toNanos(pollInterval);
+
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = capacity - 1;
+    }
+
+    public synchronized void start()
+    {
+        if (poller != null) {
+            throw new IllegalStateException("TimecodeFeed already started");
+        }
+
+        running = true;
+        poller = new Thread(this::poll, "TimecodeFeed-" + captureService.getHostname() + "-" + channelId);
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    public synchronized void close()
+    {
+        running = false;
+        if (poller != null) {
+            poller.interrupt();
+            poller = null;
+        }
+    }
+
+    public int getChannelId()
+    {
+        return channelId;
+    }
+
+    public double getFramesPerSecond()
+    {
+        return framesPerSecond;
+    }
+
+    public int getCapacity()
+    {
+        return slots.length;
+    }
+
+    public long getErrorCount()
+    {
+        return errors.sum();
+    }
+
+    public long getSequence()
+    {
+        return published;
+    }
+
+    // the timecodes of a sample are reused once the ring wraps, so check this after reading them
+    public boolean isValid(Sample sample)
+    {
+        return sample.sequence >= 0 && slots[(int) (sample.sequence & mask)].sequence == sample.sequence;
+    }
+
+    // a read only fails when the writer lapped the whole ring in the meantime, so a few retries are enough
+    public boolean readLatest(Sample sample)
+    {
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            long sequence = published;
+            if (sequence < 0) {
+                return false;
+            }
+            if (read(sequence, sample)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // false when the sequence has not been published yet or was already overwritten by the writer
+    public boolean read(long sequence, Sample sample)
+    {
+        if (sequence < 0 || sequence > published) {
+            return false;
+        }
+
+        Slot slot = slots[(int) (sequence & mask)];
+        if (slot.sequence != sequence) {
+            return false;
+        }
+
+        TimecodeCollection timecodes = slot.timecodes;
+        long sampledAt = slot.sampledAt;
+
+        if (slot.sequence != sequence) {
+            return false;
+        }
+
+        sample.sequence = sequence;
+        sample.timecodes = timecodes;
+        sample.sampledAt = sampledAt;
+        sample.framesPerSecond = framesPerSecond;
+        sample.objectMapper = captureService != null ? captureService.getObjectMapper() : null;
+        return true;
+    }
+
+    public long awaitNext(long afterSequence, long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        synchronized (publishLock) {
+            while (published <= afterSequence) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return -1;
+                }
+                TimeUnit.NANOSECONDS.timedWait(publishLock, remaining);
+            }
+        }
+        return published;
+    }
+
+    private void poll()
+    {
+        String path = "channels/" + channelId + "/timecodes";
+        long next = System.nanoTime();
+        int consecutiveErrors = 0;
+
+        while (running) {
+            long sequence = published + 1;
+            Slot slot = slots[(int) (sequence & mask)];
+
+            // the slot's collection from the previous lap is decoded into again, readers are told it is being rewritten
+            TimecodeCollection recycled = slot.timecodes;
+            slot.sequence = -1;
+
+            long delay = pollIntervalNanos;
+            try {
+                long sentAt = System.nanoTime();
+                TimecodeCollection timecodes = recycled != null ? captureService.update(path, recycled) : captureService.getTimecodes(channelId);
+                long receivedAt = System.nanoTime();
+
+                if (timecodes == null) {
+                    throw new IOException("No timecodes received for channel " + channelId);
+                }
+
+                // the server read the timecode somewhere during the round trip, take the middle
+                publish(slot, sequence, timecodes, sentAt + (receivedAt - sentAt) / 2);
+                consecutiveErrors = 0;
+            } catch (IOException | ApiException | RuntimeException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                errors.increment();
+                slot.timecodes = null;
+
+                // a node that is down or overloaded is not polled at frame rate
+                delay = Math.min(MAX_ERROR_BACKOFF_NANOS, pollIntervalNanos << Math.min(++consecutiveErrors, 16));
+            }
+
+            next += delay;
+            long now = System.nanoTime();
+            if (next - now > 0) {
+                LockSupport.parkNanos(next - now);
+            } else {
+                next = now;
+            }
+        }
+    }
+
+    void publish(TimecodeCollection timecodes, long sampledAt)
+    {
+        long sequence = published + 1;
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.sequence = -1;
+        publish(slot, sequence, timecodes, sampledAt);
+    }
+
+    private void publish(Slot slot, long sequence, TimecodeCollection timecodes, long sampledAt)
+    {
+        slot.timecodes = timecodes;
+        slot.sampledAt = sampledAt;
+        slot.sequence = sequence;
+
+        published = sequence;
+        synchronized (publishLock) {
+            publishLock.notifyAll();
+        }
+    }
+
+    private static class Slot
+    {
+        private volatile long sequence = -1;
+        private volatile TimecodeCollection timecodes;
+        private volatile long sampledAt;
+    }
+
+    public static class Sample
+    {
+        private long sequence = -1;
+        private TimecodeCollection timecodes;
+        private long sampledAt;
+        private double framesPerSecond;
+        private ObjectMapper objectMapper;
+
+        public long getSequence()
+        {
+            return sequence;
+        }
+
+        public TimecodeCollection getTimecodes()
+        {
+            return timecodes;
+        }
+
+        public long getSampledAt()
+        {
+            return sampledAt;
+        }
+
+        public long getAge(TimeUnit unit)
+        {
+            return unit.convert(System.nanoTime() - sampledAt, TimeUnit.NANOSECONDS);
+        }
+
+        // frames a running timecode has advanced since the sample was taken
+        public long getExtrapolatedFrames()
+        {
+            return getExtrapolatedFrames(System.nanoTime());
+        }
+
+        public long getExtrapolatedFrames(long nanoTime)
+        {
+            return (long) ((nanoTime - sampledAt) * framesPerSecond / TimeUnit.SECONDS.toNanos(1));
+        }
+
+        // one of the sampled timecodes moved on to where a running timecode is now
+        public Timecode extrapolate(Timecode timecode)
+        {
+            return extrapolate(timecode, System.nanoTime());
+        }
+
+        public Timecode extrapolate(Timecode timecode, long nanoTime)
+        {
+            if (timecode == null || objectMapper == null) {
+                return timecode;
+            }
+            String extrapolated = TimecodeFeed.extrapolate(timecode.toString(), getExtrapolatedFrames(nanoTime), framesPerSecond);
+            return objectMapper.convertValue(extrapolated, Timecode.class);
+        }
+    }
+
+    // adds frames to an SMPTE timecode (HH:MM:SS:FF, or HH:MM:SS;FF for drop frame), wrapping at 24 hours
+    static String extrapolate(String timecode, long frames, double framesPerSecond)
+    {
+        if (timecode == null || timecode.length() != 11) {
+            throw new IllegalArgumentException("Not an SMPTE timecode: " + timecode);
+        }
+
+        int base = (int) Math.round(framesPerSecond);
+        char separator = timecode.charAt(8);
+        boolean dropFrame = separator == ';' || separator == ',';
+        int drop = dropFrame ? (int) Math.round(framesPerSecond * 0.066666) : 0;
+
+        int hours = digits(timecode, 0);
+        int minutes = digits(timecode, 3);
+        int seconds = digits(timecode, 6);
+        int frame = digits(timecode, 9);
+
+        long framesPerTenMinutes = base * 600L - drop * 9L;
+        long framesPerDay = framesPerTenMinutes * 144;
+
+        long totalMinutes = hours * 60L + minutes;
+        long frameNumber = ((hours * 3600L + minutes * 60L + seconds) * base + frame) - drop * (totalMinutes - totalMinutes / 10);
+        frameNumber = Math.floorMod(frameNumber + frames, framesPerDay);
+
+        if (dropFrame) {
+            long framesPerMinute = base * 60L - drop;
+            long tens = frameNumber / framesPerTenMinutes;
+            long rest = frameNumber % framesPerTenMinutes;
+            frameNumber += drop * 9L * tens + (rest > drop ? drop * ((rest - drop) / framesPerMinute) : 0);
+        }
+
+        long totalSeconds = frameNumber / base;
+        return String.format("%02d:%02d:%02d%c%02d", totalSeconds / 3600, totalSeconds / 60 % 60, totalSeconds % 60, dropFrame ? ';' : ':', frameNumber % base);
+    }
+
+    private static int digits(String timecode, int index)
+    {
+        char high = timecode.charAt(index);
+        char low = timecode.charAt(index + 1);
+        if (!Character.isDigit(high) || !Character.isDigit(low)) {
+            throw new IllegalArgumentException("Not an SMPTE timecode: " + timecode);
+        }
+        return (high - '0') * 10 + (low - '0');
+    }
+}
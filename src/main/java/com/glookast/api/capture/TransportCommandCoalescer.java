@@ -0,0 +1,266 @@
+package com.glookast.api.capture;
+
+import com.glookast.commons.timecode.Timecode;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+@SuppressWarnings("WeakerAccess")
+public class TransportCommandCoalescer
+{
+    private final CaptureService captureService;
+    private final ExecutorService executor;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    private volatile boolean closed;
+
+    public TransportCommandCoalescer(CaptureService captureService)
+    {
+        this.captureService = captureService;
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "TransportCommandCoalescer-" + captureService.getHostname());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // commands already on the wire finish, waiting ones and everything merged into them are cancelled
+    public void close()
+    {
+        closed = true;
+        executor.shutdown();
+
+        for (Lane lane : lanes.values()) {
+            List<CompletableFuture<Void>> cancelled = new ArrayList<>();
+            synchronized (lane) {
+                for (Command command : lane.pending) {
+                    cancelled.addAll(command.futures);
+                }
+                lane.pending.clear();
+            }
+            for (CompletableFuture<Void> future : cancelled) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    public long getSentCount()
+    {
+        return sent.sum();
+    }
+
+    public long getCoalescedCount()
+    {
+        return coalesced.sum();
+    }
+
+    public CompletableFuture<Void> vtrJog(int channelId, int speed)
+    {
+        return submit(channelId, new Command(Kind.VTR_JOG, speed, null));
+    }
+
+    public CompletableFuture<Void> vtrShuttle(int channelId, int speed)
+    {
+        return submit(channelId, new Command(Kind.VTR_SHUTTLE, speed, null));
+    }
+
+    public CompletableFuture<Void> vtrSeek(int channelId, Timecode timecode)
+    {
+        return submit(channelId, new Command(Kind.VTR_SEEK, 0, timecode));
+    }
+
+    public CompletableFuture<Void> vtrStep(int channelId, int distance)
+    {
+        return submit(channelId, new Command(Kind.VTR_STEP, distance, null));
+    }
+
+    public CompletableFuture<Void> playoutSeek(int channelId, long position)
+    {
+        return submit(channelId, new Command(Kind.PLAYOUT_SEEK, position, null));
+    }
+
+    public CompletableFuture<Void> playoutStep(int channelId, long distance)
+    {
+        return submit(channelId, new Command(Kind.PLAYOUT_STEP, distance, null));
+    }
+
+    private CompletableFuture<Void> submit(int channelId, Command command)
+    {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Lane lane = lanes.computeIfAbsent(command.kind.device + "/" + channelId, key -> new Lane(channelId));
+
+        boolean start;
+        synchronized (lane) {
+            if (closed) {
+                future.completeExceptionally(new IllegalStateException("TransportCommandCoalescer is closed"));
+                return future;
+            }
+            lane.enqueue(command, future);
+            start = !lane.inFlight;
+            lane.inFlight = true;
+        }
+
+        if (start) {
+            try {
+                executor.execute(() -> drain(lane));
+            } catch (RuntimeException e) {
+                synchronized (lane) {
+                    lane.inFlight = false;
+                }
+                future.completeExceptionally(e);
+            }
+        }
+        return future;
+    }
+
+    // one command per channel on the wire; whatever arrives meanwhile is merged into the next one
+    private void drain(Lane lane)
+    {
+        while (true) {
+            Command command;
+            synchronized (lane) {
+                command = lane.pending.pollFirst();
+                if (command == null) {
+                    lane.inFlight = false;
+                    return;
+                }
+            }
+
+            Throwable failure = null;
+            try {
+                send(lane.channelId, command);
+                sent.increment();
+            } catch (IOException | ApiException | RuntimeException e) {
+                failure = e;
+            }
+
+            for (CompletableFuture<Void> future : command.futures) {
+                if (failure == null) {
+                    future.complete(null);
+                } else {
+                    future.completeExceptionally(failure);
+                }
+            }
+        }
+    }
+
+    private void send(int channelId, Command command) throws IOException, ApiException
+    {
+        switch (command.kind) {
+            case VTR_JOG:
+                captureService.vtrJog(channelId, (int) command.amount);
+                break;
+            case VTR_SHUTTLE:
+                captureService.vtrShuttle(channelId, (int) command.amount);
+                break;
+            case VTR_SEEK:
+                captureService.vtrSeek(channelId, command.timecode);
+                break;
+            case VTR_STEP:
+                captureService.vtrStep(channelId, (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, command.amount)));
+                break;
+            case PLAYOUT_SEEK:
+                captureService.playoutSeek(channelId, command.amount);
+                break;
+            case PLAYOUT_STEP:
+                captureService.playoutStep(channelId, command.amount);
+                break;
+        }
+    }
+
+    // POSITION commands move the head to a point, MOTION commands set a speed; only commands of the same target replace each other
+    private enum Target
+    {
+        POSITION,
+        MOTION
+    }
+
+    private enum Kind
+    {
+        VTR_JOG("vtr", Target.MOTION, false),
+        VTR_SHUTTLE("vtr", Target.MOTION, false),
+        VTR_SEEK("vtr", Target.POSITION, false),
+        VTR_STEP("vtr", Target.POSITION, true),
+        PLAYOUT_SEEK("playout", Target.POSITION, false),
+        PLAYOUT_STEP("playout", Target.POSITION, true);
+
+        private final String device;
+        private final Target target;
+        private final boolean relative;
+
+        Kind(String device, Target target, boolean relative)
+        {
+            this.device = device;
+            this.target = target;
+            this.relative = relative;
+        }
+    }
+
+    private static class Command
+    {
+        private final Kind kind;
+        private final Timecode timecode;
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        private long amount;
+
+        private Command(Kind kind, long amount, Timecode timecode)
+        {
+            this.kind = kind;
+            this.amount = amount;
+            this.timecode = timecode;
+        }
+    }
+
+    private class Lane
+    {
+        private final int channelId;
+        private final Deque<Command> pending = new ArrayDeque<>();
+        private boolean inFlight;
+
+        private Lane(int channelId)
+        {
+            this.channelId = channelId;
+        }
+
+        private void enqueue(Command command, CompletableFuture<Void> future)
+        {
+            command.futures.add(future);
+
+            // a seek replaces waiting seeks and steps, a jog or shuttle replaces waiting jogs and shuttles
+            if (!command.kind.relative) {
+                for (Iterator<Command> iterator = pending.iterator(); iterator.hasNext(); ) {
+                    Command superseded = iterator.next();
+                    if (superseded.kind.target == command.kind.target) {
+                        command.futures.addAll(superseded.futures);
+                        coalesced.increment();
+                        iterator.remove();
+                    }
+                }
+                pending.addLast(command);
+                return;
+            }
+
+            Command last = pending.peekLast();
+            if (last != null && last.kind == command.kind) {
+                last.amount += command.amount;
+                last.futures.addAll(command.futures);
+                coalesced.increment();
+            } else {
+                pending.addLast(command);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.glookast.api.capture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class AdaptivePoolSizerTest
+{
+    @Test
+    public void growsWhileRequestsQueue()
+    {
+        AdaptivePoolSizer poolSizer = new AdaptivePoolSizer(2, 16);
+
+        int limit = poolSizer.getLimit();
+        for (int i = 0; i < 10 && limit < 16; i++) {
+            poolSizer.record(TimeUnit.MILLISECONDS.toNanos(10));
+            int next = poolSizer.update(limit, 4);
+            Assert.assertTrue(next > limit);
+            limit = next;
+        }
+        Assert.assertEquals(16, limit);
+    }
+
+    @Test
+    public void backsOffWhenLatencyRises()
+    {
+        AdaptivePoolSizer poolSizer = new AdaptivePoolSizer(2, 16);
+
+        while (poolSizer.getLimit() < 16) {
+            poolSizer.record(TimeUnit.MILLISECONDS.toNanos(10));
+            poolSizer.update(poolSizer.getLimit(), 4);
+        }
+
+        poolSizer.record(TimeUnit.MILLISECONDS.toNanos(50));
+        Assert.assertTrue(poolSizer.update(16, 4) < 16);
+    }
+
+    @Test
+    public void shrinksWhenIdle()
+    {
+        AdaptivePoolSizer poolSizer = new AdaptivePoolSizer(2, 16);
+
+        while (poolSizer.getLimit() < 16) {
+            poolSizer.update(poolSizer.getLimit(), 4);
+        }
+        for (int i = 0; i < 20; i++) {
+            poolSizer.update(0, 0);
+        }
+        Assert.assertEquals(2, poolSizer.getLimit());
+    }
+}
@@ -0,0 +1,96 @@
+package com.glookast.api.capture;
+
+import com.glookast.commons.capture.PictureFormat;
+import org.junit.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class AsyncCaptureServiceTest
+{
+    private static CaptureService captureService;
+    private static AsyncCaptureService asyncCaptureService;
+    private static boolean isOnline;
+
+    @BeforeClass
+    public static void setup()
+    {
+        captureService = new CaptureService("localhost", 4000);
+        asyncCaptureService = captureService.async();
+        try {
+            captureService.getPictureFormats();
+            isOnline = true;
+        } catch (IOException | ApiException e) {
+            isOnline = false;
+        }
+    }
+
+    @AfterClass
+    public static void tearDown()
+    {
+        captureService.close();
+    }
+
+    @Before
+    public void beforeMethod()
+    {
+        org.junit.Assume.assumeTrue(isOnline);
+    }
+
+    @Test
+    public void sync()
+    {
+        Assert.assertSame(captureService, asyncCaptureService.sync());
+        Assert.assertSame(asyncCaptureService, captureService.async());
+    }
+
+    @Test
+    public void getPictureFormats()
+    {
+        List<PictureFormat> pictureFormats = null;
+
+        try {
+            pictureFormats = asyncCaptureService.getPictureFormats().get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException ignored) {
+            Assert.fail();
+        }
+
+        Assert.assertNotNull(pictureFormats);
+        Assert.assertFalse(pictureFormats.isEmpty());
+    }
+
+    @Test
+    public void getCaptureJobNotFound()
+    {
+        CompletableFuture<?> future = asyncCaptureService.getCaptureJob(UUID.randomUUID());
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof ApiException);
+        } catch (InterruptedException | TimeoutException ignored) {
+            Assert.fail();
+        }
+    }
+
+    @Test
+    public void getNamingRulesSequences()
+    {
+        Map<String, Integer> namingRuleSequences = null;
+
+        try {
+            namingRuleSequences = asyncCaptureService.getNamingRulesSequences().get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException ignored) {
+            Assert.fail();
+        }
+
+        Assert.assertNotNull(namingRuleSequences);
+    }
+}
@@ -0,0 +1,235 @@
+package com.glookast.api.capture;
+
+import com.glookast.commons.capture.Channel;
+import com.glookast.commons.capture.PictureFormat;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncPipelineTest
+{
+    @Test
+    public void catalogCache() throws Exception
+    {
+        try (StubHttpServer server = new StubHttpServer().json("picture-formats", "[{},{}]")) {
+            CaptureService captureService = new CaptureService("localhost", server.getPort());
+            captureService.setCatalogCache(CatalogCache.withDefaults());
+            try {
+                List<PictureFormat> first = captureService.async().getPictureFormats().get(5, TimeUnit.SECONDS);
+                List<PictureFormat> second = captureService.async().getPictureFormats().get(5, TimeUnit.SECONDS);
+                List<PictureFormat> third = captureService.getPictureFormats();
+
+                Assert.assertEquals(2, first.size());
+                Assert.assertSame(first, second);
+                Assert.assertSame(first, third);
+                Assert.assertEquals(1, server.getRequestCount());
+            } finally {
+                captureService.close();
+            }
+        }
+    }
+
+    @Test
+    public void retriesUnavailableNode() throws Exception
+    {
+        AtomicInteger requests = new AtomicInteger();
+        try (StubHttpServer server = new StubHttpServer().handle("channels", exchange -> {
+            if (requests.incrementAndGet() == 1) {
+                StubHttpServer.respond(exchange, 503, null);
+            } else {
+                StubHttpServer.respond(exchange, 200, "[{}]");
+            }
+        })) {
+            CaptureService captureService = new CaptureService("localhost", server.getPort());
+            captureService.setResiliencePolicy(ResiliencePolicy.defaults().backoff(10, 10, TimeUnit.MILLISECONDS));
+            try {
+                Assert.assertEquals(1, captureService.async().getChannels().get(5, TimeUnit.SECONDS).size());
+                Assert.assertEquals(1, captureService.getRetryCount());
+                Assert.assertEquals(2, server.getRequestCount());
+            } finally {
+                captureService.close();
+            }
+        }
+    }
+
+    @Test
+    public void circuitBreaker() throws Exception
+    {
+        try (StubHttpServer server = new StubHttpServer().handle("channels", exchange -> StubHttpServer.respond(exchange, 503, null))) {
+            CaptureService captureService = new CaptureService("localhost", server.getPort());
+            captureService.setResiliencePolicy(ResiliencePolicy.defaults().maxRetries(0).failureThreshold(1));
+            try {
+                assertFails(captureService.async().getChannels(), ApiException.class);
+                assertFails(captureService.async().getChannels(), CircuitBreakerOpenException.class);
+                Assert.assertEquals(1, server.getRequestCount());
+            } finally {
+                captureService.close();
+            }
+        }
+    }
+
+    @Test
+    public void deadlineOutlivesTheContext() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        try (StubHttpServer server = new StubHttpServer().handle("channels", exchange -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            StubHttpServer.respond(exchange, 200, "[{}]");
+        })) {
+            CaptureService captureService = new CaptureService("localhost", server.getPort());
+            try {
+                CompletableFuture<List<Channel>> future;
+                try (CallContext ignored = CallContext.timeout(200, TimeUnit.MILLISECONDS)) {
+                    future = captureService.async().getChannels();
+                }
+
+                assertFails(future, DeadlineExceededException.class);
+            } finally {
+                release.countDown();
+                captureService.close();
+            }
+        }
+    }
+
+    @Test
+    public void sharedWithSynchronousCallers() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        try (StubHttpServer server = new StubHttpServer().handle("channels", exchange -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            StubHttpServer.respond(exchange, 200, "[{},{}]");
+        })) {
+            CaptureService captureService = new CaptureService("localhost", server.getPort());
+            captureService.setSingleFlight(true);
+            try {
+                CompletableFuture<List<Channel>> leader = captureService.async().getChannels();
+                CompletableFuture<List<Channel>> follower = captureService.async().getChannels();
+                CompletableFuture<List<Channel>> synchronous = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return captureService.getChannels();
+                    } catch (IOException | ApiException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (captureService.getSharedGetCount() < 2 && System.nanoTime() < deadline) {
+                    Thread.sleep(5);
+                }
+                release.countDown();
+
+                Assert.assertEquals(2, leader.get(5, TimeUnit.SECONDS).size());
+                Assert.assertEquals(2, follower.get(5, TimeUnit.SECONDS).size());
+                Assert.assertEquals(2, synchronous.get(5, TimeUnit.SECONDS).size());
+                Assert.assertNotSame(leader.get().get(0), follower.get().get(0));
+                Assert.assertEquals(2, captureService.getSharedGetCount());
+                Assert.assertEquals(1, server.getRequestCount());
+            } finally {
+                captureService.close();
+            }
+        }
+    }
+
+    @Test
+    public void transportCommandSkipsSaturatedBulkPool() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        try (StubHttpServer server = new StubHttpServer().handle("channels", exchange -> {
+            if (exchange.getRequestURI().getPath().endsWith("/channels")) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                StubHttpServer.respond(exchange, 200, "[{}]");
+            } else {
+                StubHttpServer.respond(exchange, 204, null);
+            }
+        })) {
+            CaptureService captureService = new CaptureService("localhost", server.getPort(), ConnectionPoolConfig.fixed(1).realtimeConnections(1));
+            try {
+                CompletableFuture<List<Channel>> bulk = captureService.async().getChannels();
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (server.getRequestCount() < 1 && System.nanoTime() < deadline) {
+                    Thread.sleep(5);
+                }
+                Assert.assertEquals(1, ((ApacheCaptureTransport) captureService.getTransport()).getAsyncPoolStats().getLeased());
+
+                captureService.async().playoutPlay(1, null).get(2, TimeUnit.SECONDS);
+                Assert.assertFalse(bulk.isDone());
+
+                release.countDown();
+                Assert.assertEquals(1, bulk.get(5, TimeUnit.SECONDS).size());
+            } finally {
+                release.countDown();
+                captureService.close();
+            }
+        }
+    }
+
+    @Test
+    public void systemTestsShareTheSlowLane() throws Exception
+    {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        try (StubHttpServer server = new StubHttpServer().handle("storage-systems", exchange -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            StubHttpServer.respond(exchange, 200, "{}");
+        })) {
+            CaptureService captureService = new CaptureService("localhost", server.getPort(), ConnectionPoolConfig.fixed(4).slowLaneConnections(1));
+            try {
+                CompletableFuture<?> first = captureService.async().testStorageSystem(UUID.randomUUID());
+                CompletableFuture<?> second = captureService.async().testStorageSystem(UUID.randomUUID());
+
+                first.get(5, TimeUnit.SECONDS);
+                second.get(5, TimeUnit.SECONDS);
+                Assert.assertEquals(1, maxRunning.get());
+                Assert.assertEquals(2, server.getRequestCount());
+            } finally {
+                captureService.close();
+            }
+        }
+    }
+
+    @Test
+    public void failsAfterClose() throws Exception
+    {
+        CaptureService captureService = new CaptureService("localhost", 1);
+        AsyncCaptureService asyncCaptureService = captureService.async();
+        captureService.close();
+
+        assertFails(asyncCaptureService.getChannels(), IOException.class);
+    }
+
+    private static void assertFails(CompletableFuture<?> future, Class<? extends Exception> type) throws Exception
+    {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(String.valueOf(e.getCause()), type.isInstance(e.getCause()));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.glookast.api.capture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+public class CallContextTest
+{
+    @Test
+    public void scope()
+    {
+        Assert.assertNull(CallContext.current());
+
+        try (CallContext outer = CallContext.timeout(1, TimeUnit.MINUTES)) {
+            Assert.assertSame(outer, CallContext.current());
+
+            try (CallContext inner = CallContext.timeout(1, TimeUnit.HOURS)) {
+                Assert.assertSame(inner, CallContext.current());
+                Assert.assertEquals(outer.getDeadline(), inner.getDeadline());
+            }
+            Assert.assertSame(outer, CallContext.current());
+        }
+
+        Assert.assertNull(CallContext.current());
+    }
+
+    @Test
+    public void expired() throws IOException
+    {
+        try (CallContext context = CallContext.timeout(0, TimeUnit.MILLISECONDS)) {
+            Assert.assertTrue(context.isExpired());
+            context.check();
+            Assert.fail();
+        } catch (DeadlineExceededException ignored) {
+        }
+    }
+
+    @Test
+    public void cancelled() throws IOException
+    {
+        try (CallContext outer = CallContext.cancellable(); CallContext inner = CallContext.cancellable()) {
+            Assert.assertFalse(inner.hasDeadline());
+            inner.check();
+
+            outer.cancel();
+            Assert.assertTrue(inner.isCancelled());
+            try {
+                inner.check();
+                Assert.fail();
+            } catch (InterruptedIOException e) {
+                Assert.assertFalse(e instanceof DeadlineExceededException);
+            }
+        }
+    }
+}
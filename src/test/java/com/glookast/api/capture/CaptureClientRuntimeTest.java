@@ -0,0 +1,58 @@
+package com.glookast.api.capture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class CaptureClientRuntimeTest
+{
+    @Test
+    public void sharedResources()
+    {
+        CaptureClientRuntime runtime = new CaptureClientRuntime(ConnectionPoolConfig.fixed(4), 32);
+
+        CaptureService a = runtime.createCaptureService("node-a", 8080);
+        CaptureService b = runtime.createCaptureService("node-b", 8080);
+
+        Assert.assertEquals(2, runtime.getCaptureServiceCount());
+        Assert.assertSame(runtime, a.getRuntime());
+        Assert.assertSame(a.getTransport(), b.getTransport());
+        Assert.assertSame(a.getObjectMapper(), b.getObjectMapper());
+        Assert.assertEquals(32, runtime.getPoolStats().getMax());
+
+        a.close();
+        Assert.assertEquals(1, runtime.getCaptureServiceCount());
+
+        runtime.close();
+        Assert.assertEquals(0, runtime.getCaptureServiceCount());
+
+        try {
+            runtime.createCaptureService("node-c", 8080);
+            Assert.fail();
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
+    @Test
+    public void sharedAsyncClient() throws Exception
+    {
+        try (StubHttpServer first = new StubHttpServer().json("channels", "[{}]");
+             StubHttpServer second = new StubHttpServer().json("channels", "[{}]")) {
+            CaptureClientRuntime runtime = new CaptureClientRuntime(ConnectionPoolConfig.fixed(4), 32);
+            try {
+                CaptureService a = runtime.createCaptureService("localhost", first.getPort());
+                CaptureService b = runtime.createCaptureService("localhost", second.getPort());
+
+                Assert.assertEquals(1, a.async().getChannels().get(5, TimeUnit.SECONDS).size());
+                Assert.assertEquals(1, b.async().getChannels().get(5, TimeUnit.SECONDS).size());
+
+                // both nodes are routes of the same pool instead of each service starting its own reactor
+                Assert.assertEquals(32, runtime.getAsyncPoolStats().getMax());
+                Assert.assertEquals(2, runtime.getAsyncPoolStats().getAvailable());
+            } finally {
+                runtime.close();
+            }
+        }
+    }
+}
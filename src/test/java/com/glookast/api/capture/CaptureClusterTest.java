@@ -0,0 +1,105 @@
+package com.glookast.api.capture;
+
+import com.glookast.commons.capture.Channel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class CaptureClusterTest
+{
+    @Test
+    public void aggregation() throws Exception
+    {
+        try (StubHttpServer first = new StubHttpServer().json("channels", "[{},{}]");
+             StubHttpServer second = new StubHttpServer().json("channels", "[{}]")) {
+            CaptureCluster cluster = new CaptureCluster(5, TimeUnit.SECONDS);
+            cluster.addNode("a", new CaptureService("localhost", first.getPort()));
+            cluster.addNode("b", new CaptureService("localhost", second.getPort()));
+            try {
+                ClusterResult<Channel> result = cluster.getChannels();
+
+                Assert.assertTrue(result.isComplete());
+                Assert.assertEquals(Arrays.asList("a", "b"), Arrays.asList(result.getValuesByNode().keySet().toArray()));
+                Assert.assertEquals(2, result.getValuesByNode().get("a").size());
+                Assert.assertEquals(1, result.getValuesByNode().get("b").size());
+                Assert.assertEquals(3, result.getValues().size());
+                Assert.assertEquals("a", result.getValues().get(0).getNode());
+                Assert.assertEquals("b", result.getValues().get(2).getNode());
+            } finally {
+                cluster.close();
+            }
+        }
+    }
+
+    @Test
+    public void partialFailure() throws Exception
+    {
+        try (StubHttpServer healthy = new StubHttpServer().json("channels", "[{}]");
+             StubHttpServer failing = new StubHttpServer().handle("channels", exchange -> StubHttpServer.respond(exchange, 500, null))) {
+            CaptureCluster cluster = new CaptureCluster(5, TimeUnit.SECONDS);
+            cluster.addNode("healthy", new CaptureService("localhost", healthy.getPort()));
+            cluster.addNode("failing", new CaptureService("localhost", failing.getPort()));
+            cluster.addNode("unreachable", new CaptureService("localhost", 1));
+            try {
+                ClusterResult<Channel> result = cluster.getChannels();
+
+                Assert.assertFalse(result.isComplete());
+                Assert.assertEquals(1, result.getValues().size());
+                Assert.assertEquals("healthy", result.getValues().get(0).getNode());
+                Assert.assertEquals(2, result.getFailures().size());
+                Assert.assertEquals(500, ((ApiException) result.getFailures().get("failing")).getApiError().getStatus());
+                Assert.assertTrue(String.valueOf(result.getFailures().get("unreachable")), result.getFailures().get("unreachable") instanceof IOException);
+                Assert.assertTrue(result.getTimedOut().isEmpty());
+            } finally {
+                cluster.close();
+            }
+        }
+    }
+
+    @Test
+    public void slowNodeIsAbortedAtTheTimeout() throws Exception
+    {
+        CountDownLatch aborted = new CountDownLatch(1);
+        try (StubHttpServer healthy = new StubHttpServer().json("channels", "[{}]");
+             StubHttpServer slow = new StubHttpServer().handle("channels", exchange -> {
+                 // keeps trickling whitespace until the client hangs up
+                 exchange.getResponseHeaders().set("Content-Type", "application/json");
+                 exchange.sendResponseHeaders(200, 0);
+                 try (OutputStream outputStream = exchange.getResponseBody()) {
+                     for (int i = 0; i < 500; i++) {
+                         outputStream.write(' ');
+                         outputStream.flush();
+                         Thread.sleep(10);
+                     }
+                 } catch (IOException e) {
+                     aborted.countDown();
+                 } catch (InterruptedException e) {
+                     Thread.currentThread().interrupt();
+                 }
+             })) {
+            CaptureCluster cluster = new CaptureCluster(5, TimeUnit.SECONDS);
+            cluster.addNode("healthy", new CaptureService("localhost", healthy.getPort()));
+            CaptureService slowNode = new CaptureService("localhost", slow.getPort());
+            // with retries the node hands out a future derived from the exchange, cancelling it would leave the request running
+            slowNode.setResiliencePolicy(ResiliencePolicy.defaults());
+            cluster.addNode("slow", slowNode);
+            try {
+                long start = System.nanoTime();
+                ClusterResult<Channel> result = cluster.query(AsyncCaptureService::getChannels, 1, TimeUnit.SECONDS);
+
+                Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3));
+                Assert.assertEquals(1, result.getValues().size());
+                Assert.assertEquals(1, result.getTimedOut().size());
+                Assert.assertTrue(result.getTimedOut().contains("slow"));
+                Assert.assertTrue(aborted.await(2, TimeUnit.SECONDS));
+            } finally {
+                cluster.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.glookast.api.capture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CaptureJobBatchTest
+{
+    @Test
+    public void synchronousCompletion() throws Exception
+    {
+        // a closed transport fails every call before it returns, which used to recurse once per operation
+        CaptureService captureService = new CaptureService("localhost", 1);
+        captureService.close();
+
+        CaptureJobBatch batch = captureService.batch().parallelism(1);
+        for (int i = 0; i < 20000; i++) {
+            batch.stop(UUID.randomUUID());
+        }
+
+        CaptureJobBatch.Report report = batch.executeAsync().get(30, TimeUnit.SECONDS);
+        Assert.assertEquals(20000, report.getResults().size());
+        Assert.assertEquals(20000, report.getFailed().size());
+    }
+
+    @Test
+    public void partialFailure() throws Exception
+    {
+        UUID missing = UUID.randomUUID();
+        try (StubHttpServer server = new StubHttpServer().handle("capture-jobs", exchange -> {
+            boolean found = !exchange.getRequestURI().getPath().contains(missing.toString());
+            StubHttpServer.respond(exchange, found ? 204 : 404, null);
+        })) {
+            CaptureService captureService = new CaptureService("localhost", server.getPort());
+            try {
+                UUID first = UUID.randomUUID();
+                UUID second = UUID.randomUUID();
+                CaptureJobBatch.Report report = captureService.batch()
+                                                              .stop(first)
+                                                              .cancel(missing)
+                                                              .delete(second)
+                                                              .execute();
+
+                Assert.assertFalse(report.isSuccessful());
+                Assert.assertEquals(3, report.getResults().size());
+                Assert.assertEquals(2, report.getSucceeded().size());
+                Assert.assertEquals(first, report.getResults().get(0).getCaptureJobId());
+                Assert.assertEquals(CaptureJobBatch.OperationType.DELETE, report.getResults().get(2).getOperationType());
+
+                CaptureJobBatch.Result failed = report.getFailed().get(0);
+                Assert.assertEquals(missing, failed.getCaptureJobId());
+                Assert.assertEquals(CaptureJobBatch.OperationType.CANCEL, failed.getOperationType());
+                Assert.assertEquals(404, failed.getApiError().getStatus());
+            } finally {
+                captureService.close();
+            }
+        }
+    }
+
+    @Test
+    public void boundedParallelism() throws Exception
+    {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        try (StubHttpServer server = new StubHttpServer().handle("capture-jobs", exchange -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            StubHttpServer.respond(exchange, 204, null);
+        })) {
+            CaptureService captureService = new CaptureService("localhost", server.getPort());
+            try {
+                CaptureJobBatch batch = captureService.batch().parallelism(3);
+                for (int i = 0; i < 12; i++) {
+                    batch.stop(UUID.randomUUID());
+                }
+
+                CaptureJobBatch.Report report = batch.execute();
+                Assert.assertTrue(report.isSuccessful());
+                Assert.assertEquals(12, server.getRequestCount());
+                Assert.assertTrue(String.valueOf(maxInFlight.get()), maxInFlight.get() <= 3);
+            } finally {
+                captureService.close();
+            }
+        }
+    }
+
+    @Test
+    public void deleteInvalidatesThumbnail() throws Exception
+    {
+        try (StubHttpServer server = new StubHttpServer().handle("capture-jobs", exchange -> StubHttpServer.respond(exchange, 204, null))) {
+            CaptureService captureService = new CaptureService("localhost", server.getPort());
+            ThumbnailCache thumbnailCache = new ThumbnailCache(1024);
+            captureService.setThumbnailCache(thumbnailCache);
+            try {
+                UUID captureJobId = UUID.randomUUID();
+                thumbnailCache.put(captureJobId, thumbnailCache.currentGeneration(captureJobId), new byte[8]);
+
+                Assert.assertTrue(captureService.batch().delete(captureJobId).execute().isSuccessful());
+                Assert.assertNull(thumbnailCache.get(captureJobId));
+            } finally {
+                captureService.close();
+            }
+        }
+    }
+}
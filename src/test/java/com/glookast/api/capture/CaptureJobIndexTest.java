@@ -0,0 +1,113 @@
+package com.glookast.api.capture;
+
+import com.glookast.commons.capture.CaptureJob;
+import com.glookast.commons.capture.CaptureJobStatus;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+public class CaptureJobIndexTest
+{
+    private CaptureService captureService;
+    private CaptureJobIndex captureJobIndex;
+
+    @Before
+    public void setUp()
+    {
+        captureService = new CaptureService("localhost", 1);
+        captureJobIndex = new CaptureJobIndex(captureService);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        captureJobIndex.close();
+        captureService.close();
+    }
+
+    @Test
+    public void lookups()
+    {
+        CaptureJob a = captureJob(1, "a", CaptureJobStatus.RUNNING);
+        CaptureJob b = captureJob(1, "b", CaptureJobStatus.PENDING);
+        CaptureJob c = captureJob(2, "a", CaptureJobStatus.RUNNING);
+
+        captureJobIndex.onCaptureJobChanged(a);
+        captureJobIndex.onCaptureJobChanged(b);
+        captureJobIndex.onCaptureJobChanged(c);
+
+        Assert.assertEquals(3, captureJobIndex.size());
+        Assert.assertEquals(b.getId(), captureJobIndex.getCaptureJob(b.getId()).getId());
+        Assert.assertEquals(2, captureJobIndex.getCaptureJobs(1).size());
+        Assert.assertEquals(2, captureJobIndex.getCaptureJobs("a").size());
+        Assert.assertEquals(1, captureJobIndex.getCaptureJobs(CaptureJobStatus.PENDING).size());
+        Assert.assertEquals(c.getId(), captureJobIndex.getCaptureJobs(2, "a", CaptureJobStatus.RUNNING).get(0).getId());
+        Assert.assertTrue(captureJobIndex.getCaptureJobs(3).isEmpty());
+        Assert.assertTrue(captureJobIndex.getCaptureJobs(2, "b", null).isEmpty());
+    }
+
+    @Test
+    public void updatesMoveBetweenIndexes()
+    {
+        CaptureJob captureJob = captureJob(1, "a", CaptureJobStatus.PENDING);
+        captureJobIndex.onCaptureJobChanged(captureJob);
+
+        CaptureJob running = captureJob(1, "a", CaptureJobStatus.RUNNING);
+        running.setId(captureJob.getId());
+        captureJobIndex.onCaptureJobChanged(running);
+
+        Assert.assertEquals(1, captureJobIndex.size());
+        Assert.assertTrue(captureJobIndex.getCaptureJobs(CaptureJobStatus.PENDING).isEmpty());
+        Assert.assertEquals(CaptureJobStatus.RUNNING, captureJobIndex.getCaptureJobs(CaptureJobStatus.RUNNING).get(0).getStatus());
+
+        captureJobIndex.onCaptureJobRemoved(captureJob.getId());
+
+        Assert.assertEquals(0, captureJobIndex.size());
+        Assert.assertTrue(captureJobIndex.getCaptureJobs("a").isEmpty());
+    }
+
+    @Test
+    public void callersCannotChangeTheIndex()
+    {
+        CaptureJob captureJob = captureJob(1, "a", CaptureJobStatus.PENDING);
+        captureJobIndex.onCaptureJobChanged(captureJob);
+        captureJob.setStatus(CaptureJobStatus.COMPLETED);
+
+        CaptureJob indexed = captureJobIndex.getCaptureJob(captureJob.getId());
+        Assert.assertEquals(CaptureJobStatus.PENDING, indexed.getStatus());
+        indexed.setStatus(CaptureJobStatus.RUNNING);
+        captureJobIndex.getCaptureJobs().get(0).setChannelId(2);
+
+        Assert.assertNotSame(indexed, captureJobIndex.getCaptureJob(captureJob.getId()));
+        Assert.assertEquals(CaptureJobStatus.PENDING, captureJobIndex.getCaptureJob(captureJob.getId()).getStatus());
+        Assert.assertEquals(1, captureJobIndex.getCaptureJobs(CaptureJobStatus.PENDING).size());
+        Assert.assertEquals(Integer.valueOf(1), captureJobIndex.getCaptureJobs(1).get(0).getChannelId());
+    }
+
+    @Test
+    public void version()
+    {
+        CaptureJob captureJob = captureJob(1, "a", CaptureJobStatus.PENDING);
+
+        long version = captureJobIndex.getVersion();
+        captureJobIndex.onCaptureJobChanged(captureJob);
+        Assert.assertTrue(captureJobIndex.getVersion() > version);
+
+        version = captureJobIndex.getVersion();
+        captureJobIndex.onCaptureJobChanged(captureJob);
+        Assert.assertEquals(version, captureJobIndex.getVersion());
+    }
+
+    private static CaptureJob captureJob(int channelId, String externalId, CaptureJobStatus captureJobStatus)
+    {
+        CaptureJob captureJob = new CaptureJob();
+        captureJob.setId(UUID.randomUUID());
+        captureJob.setChannelId(channelId);
+        captureJob.setExternalId(externalId);
+        captureJob.setStatus(captureJobStatus);
+        return captureJob;
+    }
+}
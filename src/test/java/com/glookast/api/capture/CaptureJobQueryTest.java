@@ -0,0 +1,131 @@
+package com.glookast.api.capture;
+
+import com.glookast.commons.capture.CaptureJob;
+import com.glookast.commons.capture.CaptureJobStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class CaptureJobQueryTest
+{
+    @Test
+    public void toQueryParams()
+    {
+        Map<String, Object> queryParams = new CaptureJobQuery()
+            .channelId(1)
+            .status(CaptureJobStatus.RUNNING)
+            .startedAfter(Instant.parse("2019-01-01T00:00:00Z"))
+            .sortBy("startTime", true)
+            .limit(50)
+            .fields("id", "clipName")
+            .toQueryParams();
+
+        Assert.assertEquals(1, queryParams.get("channelId"));
+        Assert.assertEquals(CaptureJobStatus.RUNNING, queryParams.get("status"));
+        Assert.assertEquals("2019-01-01T00:00:00Z", String.valueOf(queryParams.get("startedAfter")));
+        Assert.assertEquals("-startTime", queryParams.get("sort"));
+        Assert.assertEquals(50, queryParams.get("limit"));
+        Assert.assertEquals("id,clipName", queryParams.get("fields"));
+        Assert.assertFalse(queryParams.containsKey("externalId"));
+        Assert.assertFalse(queryParams.containsKey("offset"));
+    }
+
+    @Test
+    public void defaultFields()
+    {
+        Assert.assertEquals("id,clipName,status", new CaptureJobQuery().toQueryParams(CaptureJobSummary.FIELDS).get("fields"));
+        Assert.assertEquals("id", new CaptureJobQuery().fields("id").toQueryParams(CaptureJobSummary.FIELDS).get("fields"));
+        Assert.assertFalse(new CaptureJobQuery().toQueryParams().containsKey("fields"));
+    }
+
+    @Test
+    public void nextPage()
+    {
+        CaptureJobQuery query = new CaptureJobQuery().limit(2);
+        CaptureJobQuery next = query.nextPage(Arrays.asList("a", "b")).nextPage(Arrays.asList("c", "d"));
+
+        Assert.assertNull(query.getOffset());
+        Assert.assertEquals(Integer.valueOf(4), next.getOffset());
+        Assert.assertEquals(Integer.valueOf(2), next.getLimit());
+        Assert.assertNull(next.nextPage(Collections.singletonList("e")));
+    }
+
+    @Test
+    public void pagesThroughStubServer() throws Exception
+    {
+        try (StubHttpServer server = new StubHttpServer().handle("capture-jobs", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            StubHttpServer.respond(exchange, 200, query.contains("offset=4") ? jobs(5) : query.contains("offset=2") ? jobs(3, 4) : jobs(1, 2));
+        })) {
+            CaptureService captureService = new CaptureService("localhost", server.getPort());
+            try {
+                List<CaptureJob> captureJobs = new ArrayList<>();
+                for (CaptureJobQuery query = new CaptureJobQuery().limit(2); query != null; ) {
+                    List<CaptureJob> page = captureService.getCaptureJobs(query);
+                    captureJobs.addAll(page);
+                    query = query.nextPage(page);
+                }
+
+                Assert.assertEquals(5, captureJobs.size());
+                Assert.assertEquals(3, server.getRequestCount());
+            } finally {
+                captureService.close();
+            }
+        }
+    }
+
+    @Test
+    public void serverIgnoresLimit() throws Exception
+    {
+        try (StubHttpServer server = new StubHttpServer().json("capture-jobs", jobs(1, 2, 3))) {
+            CaptureService captureService = new CaptureService("localhost", server.getPort());
+            try {
+                CaptureJobQuery query = new CaptureJobQuery().limit(2);
+                List<CaptureJob> page = captureService.getCaptureJobs(query);
+                try {
+                    query.nextPage(page);
+                    Assert.fail();
+                } catch (IllegalStateException ignored) {
+                }
+            } finally {
+                captureService.close();
+            }
+        }
+    }
+
+    @Test
+    public void serverIgnoresOffset() throws Exception
+    {
+        try (StubHttpServer server = new StubHttpServer().json("capture-jobs", jobs(1, 2))) {
+            CaptureService captureService = new CaptureService("localhost", server.getPort());
+            try {
+                CaptureJobQuery query = new CaptureJobQuery().limit(2);
+                query = query.nextPage(captureService.getCaptureJobs(query));
+                List<CaptureJob> page = captureService.getCaptureJobs(query);
+                try {
+                    query.nextPage(page);
+                    Assert.fail();
+                } catch (IllegalStateException ignored) {
+                }
+            } finally {
+                captureService.close();
+            }
+        }
+    }
+
+    private static String jobs(int... ids)
+    {
+        StringBuilder json = new StringBuilder("[");
+        for (int id : ids) {
+            json.append(json.length() > 1 ? "," : "").append("{\"id\":\"").append(new UUID(0, id)).append("\"}");
+        }
+        return json.append("]").toString();
+    }
+}
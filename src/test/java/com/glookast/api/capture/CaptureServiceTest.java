@@ -1,9 +1,11 @@
 package com.glookast.api.capture;
 
+import com.glookast.commons.capture.CaptureJob;
 import com.glookast.commons.capture.ComPort;
 import com.glookast.commons.capture.NamingRule;
 import com.glookast.commons.capture.PictureFormat;
 import com.glookast.commons.capture.SystemTestResult;
+import com.glookast.commons.capture.TransferJob;
 import com.glookast.commons.templates.*;
 import org.junit.*;
 
@@ -12,6 +14,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public class CaptureServiceTest
 {
@@ -484,6 +487,51 @@ public class CaptureServiceTest
     {
     }
 
+    @Test
+    public void getCaptureJobs5()
+    {
+    }
+
+    @Test
+    public void getCaptureJobSummaries()
+    {
+    }
+
+    @Test
+    public void streamCaptureJobs()
+    {
+        List<CaptureJob> captureJobs = null;
+        long count = -1;
+
+        try {
+            captureJobs = captureService.getCaptureJobs();
+            try (Stream<CaptureJob> stream = captureService.streamCaptureJobs()) {
+                count = stream.count();
+            }
+        } catch (IOException | ApiException ignored) {
+            Assert.fail();
+        }
+
+        Assert.assertNotNull(captureJobs);
+        Assert.assertEquals(captureJobs.size(), count);
+    }
+
+    @Test
+    public void streamTransferJobs()
+    {
+        try (Stream<TransferJob> stream = captureService.streamTransferJobs()) {
+            Assert.assertTrue(stream.limit(1).count() <= 1);
+        } catch (IOException | ApiException ignored) {
+            Assert.fail();
+        }
+
+        try {
+            Assert.assertNotNull(captureService.getTransferJobs());
+        } catch (IOException | ApiException ignored) {
+            Assert.fail();
+        }
+    }
+
     @Test
     public void getCaptureJob()
     {
@@ -554,6 +602,16 @@ public class CaptureServiceTest
     {
     }
 
+    @Test
+    public void getCaptureJobThumbnail1()
+    {
+    }
+
+    @Test
+    public void openCaptureJobThumbnail()
+    {
+    }
+
     @Test
     public void stopCaptureJob()
     {
@@ -0,0 +1,113 @@
+package com.glookast.api.capture;
+
+import com.glookast.commons.capture.PictureFormat;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class CatalogCacheTest
+{
+    @Test
+    public void withDefaults()
+    {
+        CatalogCache catalogCache = CatalogCache.withDefaults();
+
+        Assert.assertTrue(catalogCache.isCached("templates"));
+        Assert.assertTrue(catalogCache.isCached("picture-formats"));
+        Assert.assertFalse(catalogCache.isCached("capture-jobs"));
+    }
+
+    @Test
+    public void getAndPut()
+    {
+        CatalogCache catalogCache = new CatalogCache(16).timeToLive("templates", 1, TimeUnit.MINUTES);
+
+        Assert.assertNull(catalogCache.get("templates", "templates", String.class));
+
+        List<String> put = catalogCache.put("templates", "templates", catalogCache.currentGeneration("templates"), String.class, list("a", "b"));
+
+        Assert.assertSame(put, catalogCache.get("templates", "templates", String.class));
+        Assert.assertEquals(list("a", "b"), put);
+        Assert.assertEquals(1, catalogCache.getHitCount());
+        Assert.assertEquals(1, catalogCache.getMissCount());
+        Assert.assertNull(catalogCache.get("templates", "templates", Integer.class));
+    }
+
+    @Test
+    public void readsShareAnUnmodifiableList() throws Exception
+    {
+        try (StubHttpServer server = new StubHttpServer().json("picture-formats", "[{},{}]")) {
+            CaptureService captureService = new CaptureService("localhost", server.getPort());
+            captureService.setCatalogCache(CatalogCache.withDefaults());
+            try {
+                List<PictureFormat> first = captureService.getPictureFormats();
+                try {
+                    first.clear();
+                    Assert.fail();
+                } catch (UnsupportedOperationException ignored) {
+                }
+
+                List<PictureFormat> second = captureService.getPictureFormats();
+                List<PictureFormat> third = captureService.getPictureFormats();
+
+                Assert.assertEquals(2, second.size());
+                Assert.assertSame(first, second);
+                Assert.assertSame(second, third);
+                Assert.assertEquals(1, server.getRequestCount());
+                Assert.assertEquals(2, captureService.getCatalogCache().getHitCount());
+            } finally {
+                captureService.close();
+            }
+        }
+    }
+
+    @Test
+    public void expiry()
+    {
+        CatalogCache catalogCache = new CatalogCache(16).timeToLive("templates", 0, TimeUnit.MILLISECONDS);
+
+        catalogCache.put("templates", "templates", catalogCache.currentGeneration("templates"), String.class, list("a"));
+
+        Assert.assertNull(catalogCache.get("templates", "templates", String.class));
+    }
+
+    @Test
+    public void eviction()
+    {
+        CatalogCache catalogCache = new CatalogCache(2).timeToLive("templates", 1, TimeUnit.MINUTES);
+
+        for (int i = 0; i < 3; i++) {
+            catalogCache.put("templates", "templates/" + i, catalogCache.currentGeneration("templates"), String.class, list(String.valueOf(i)));
+        }
+
+        Assert.assertEquals(2, catalogCache.size());
+        Assert.assertNull(catalogCache.get("templates", "templates/0", String.class));
+        Assert.assertNotNull(catalogCache.get("templates", "templates/2", String.class));
+    }
+
+    @Test
+    public void refresh()
+    {
+        CatalogCache catalogCache = new CatalogCache(16).timeToLive("templates", 1, TimeUnit.MINUTES);
+
+        long generation = catalogCache.currentGeneration("templates");
+        catalogCache.put("templates", "templates", generation, String.class, list("a"));
+        catalogCache.refresh("templates");
+
+        Assert.assertNull(catalogCache.get("templates", "templates", String.class));
+
+        // a response fetched before the refresh must not repopulate the cache
+        catalogCache.put("templates", "templates", generation, String.class, list("stale"));
+
+        Assert.assertNull(catalogCache.get("templates", "templates", String.class));
+    }
+
+    private static List<String> list(String... values)
+    {
+        return new ArrayList<>(Arrays.asList(values));
+    }
+}
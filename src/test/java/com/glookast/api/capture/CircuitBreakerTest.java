@@ -0,0 +1,74 @@
+package com.glookast.api.capture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CircuitBreakerTest
+{
+    @Test
+    public void opensAfterConsecutiveFailures()
+    {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(3, 1, TimeUnit.SECONDS, () -> 0);
+
+        Assert.assertNull(circuitBreaker.onFailure());
+        Assert.assertNull(circuitBreaker.onFailure());
+        Assert.assertNull(circuitBreaker.onSuccess());
+        Assert.assertNull(circuitBreaker.onFailure());
+        Assert.assertNull(circuitBreaker.onFailure());
+        Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.onFailure());
+
+        Assert.assertFalse(circuitBreaker.allow());
+        Assert.assertEquals(1, circuitBreaker.getTripCount());
+        Assert.assertEquals(1, circuitBreaker.getRejectedCount());
+    }
+
+    @Test
+    public void halfOpenProbe()
+    {
+        AtomicLong clock = new AtomicLong();
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, 1, TimeUnit.SECONDS, clock::get);
+
+        circuitBreaker.onFailure();
+        Assert.assertFalse(circuitBreaker.allow());
+
+        clock.set(TimeUnit.SECONDS.toNanos(1));
+        Assert.assertTrue(circuitBreaker.allow());
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        Assert.assertFalse(circuitBreaker.allow());
+
+        Assert.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.onFailure());
+        Assert.assertFalse(circuitBreaker.allow());
+
+        clock.set(TimeUnit.SECONDS.toNanos(2));
+        Assert.assertTrue(circuitBreaker.allow());
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.onSuccess());
+        Assert.assertTrue(circuitBreaker.allow());
+        Assert.assertTrue(circuitBreaker.allow());
+    }
+
+    @Test
+    public void disabled()
+    {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(0, 1, TimeUnit.SECONDS, () -> 0);
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertNull(circuitBreaker.onFailure());
+        }
+        Assert.assertTrue(circuitBreaker.allow());
+    }
+
+    @Test
+    public void backoff()
+    {
+        ResiliencePolicy policy = ResiliencePolicy.defaults().backoff(100, 1000, TimeUnit.MILLISECONDS);
+
+        Assert.assertEquals(100, policy.backoffMillis(0, 1.0));
+        Assert.assertEquals(400, policy.backoffMillis(2, 1.0));
+        Assert.assertEquals(1000, policy.backoffMillis(10, 1.0));
+        Assert.assertEquals(1000, policy.backoffMillis(60, 1.0));
+        Assert.assertEquals(0, policy.backoffMillis(3, 0.0));
+    }
+}
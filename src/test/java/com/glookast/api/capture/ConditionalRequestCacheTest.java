@@ -0,0 +1,115 @@
+package com.glookast.api.capture;
+
+import com.glookast.commons.capture.Channel;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ConditionalRequestCacheTest
+{
+    private final List<String> ifNoneMatch = Collections.synchronizedList(new ArrayList<>());
+
+    private StubHttpServer server;
+    private CaptureService captureService;
+    private volatile String eTag = "\"v1\"";
+    private volatile String body = "[{}]";
+    private volatile boolean honourConditional = true;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        server = new StubHttpServer().handle("channels", exchange -> {
+            String condition = exchange.getRequestHeaders().getFirst("If-None-Match");
+            ifNoneMatch.add(String.valueOf(condition));
+            exchange.getResponseHeaders().set("ETag", eTag);
+            if (honourConditional && eTag.equals(condition)) {
+                StubHttpServer.respond(exchange, 304, null);
+            } else {
+                StubHttpServer.respond(exchange, 200, exchange.getRequestURI().getPath().endsWith("channels") ? body : "{}");
+            }
+        });
+        captureService = new CaptureService("localhost", server.getPort());
+    }
+
+    @After
+    public void tearDown()
+    {
+        captureService.close();
+        server.close();
+    }
+
+    @Test
+    public void notModified() throws Exception
+    {
+        captureService.setConditionalRequestCache(ConditionalRequestCache.forChannels());
+
+        List<Channel> first = captureService.getChannels();
+        List<Channel> second = captureService.getChannels();
+
+        Assert.assertEquals("[null, \"v1\"]", ifNoneMatch.toString());
+        Assert.assertEquals(1, second.size());
+        // a hit is the list decoded on the miss, nothing is parsed again
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, captureService.getConditionalRequestCache().getNotModifiedCount());
+        Assert.assertEquals(1, captureService.getConditionalRequestCache().getMissCount());
+    }
+
+    @Test
+    public void changedETag() throws Exception
+    {
+        captureService.setConditionalRequestCache(ConditionalRequestCache.forChannels());
+
+        captureService.getChannels();
+        eTag = "\"v2\"";
+        body = "[{},{}]";
+        List<Channel> changed = captureService.getChannels();
+        List<Channel> cached = captureService.getChannels();
+
+        Assert.assertEquals("[null, \"v1\", \"v2\"]", ifNoneMatch.toString());
+        Assert.assertEquals(2, changed.size());
+        Assert.assertEquals(2, cached.size());
+        Assert.assertEquals(2, captureService.getConditionalRequestCache().getMissCount());
+        Assert.assertEquals(1, captureService.getConditionalRequestCache().getNotModifiedCount());
+    }
+
+    @Test
+    public void unchangedBody() throws Exception
+    {
+        honourConditional = false;
+        captureService.setConditionalRequestCache(ConditionalRequestCache.forChannels());
+
+        List<Channel> first = captureService.getChannels();
+        try {
+            first.clear();
+            Assert.fail();
+        } catch (UnsupportedOperationException ignored) {
+        }
+        List<Channel> second = captureService.getChannels();
+
+        Assert.assertEquals(1, second.size());
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, captureService.getConditionalRequestCache().getUnchangedBodyCount());
+    }
+
+    @Test
+    public void eviction() throws Exception
+    {
+        captureService.setConditionalRequestCache(new ConditionalRequestCache(1, "channels"));
+
+        captureService.getChannel(1);
+        captureService.getChannel(2);
+        Assert.assertEquals(1, captureService.getConditionalRequestCache().size());
+
+        // channel 1 was evicted, so it is fetched without a condition
+        captureService.getChannel(1);
+        captureService.getChannel(1);
+
+        Assert.assertEquals("[null, null, null, \"v1\"]", ifNoneMatch.toString());
+        Assert.assertEquals(1, captureService.getConditionalRequestCache().getNotModifiedCount());
+    }
+}
@@ -0,0 +1,44 @@
+package com.glookast.api.capture;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+public class JsonEntityTest
+{
+    private final ObjectWriter writer = new ObjectMapper().writerFor(Map.class);
+    private final Map<String, String> value = Collections.singletonMap("clipName", "clip");
+
+    @Test
+    public void contentLength() throws IOException
+    {
+        JsonEntity entity = new JsonEntity(writer, value, false);
+        Assert.assertFalse(entity.isChunked());
+        Assert.assertEquals(19, entity.getContentLength());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        entity.writeTo(outputStream);
+        Assert.assertEquals("{\"clipName\":\"clip\"}", new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+        Assert.assertEquals(19, entity.getBytesWritten());
+    }
+
+    @Test
+    public void chunked() throws IOException
+    {
+        JsonEntity entity = new JsonEntity(writer, value, true);
+        Assert.assertTrue(entity.isChunked());
+        Assert.assertEquals(-1, entity.getContentLength());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        entity.writeTo(outputStream);
+        Assert.assertEquals(19, outputStream.size());
+        Assert.assertEquals(19, entity.getBytesWritten());
+    }
+}
@@ -0,0 +1,42 @@
+package com.glookast.api.capture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class LatencyHistogramTest
+{
+    @Test
+    public void index()
+    {
+        for (long value = 0; value < 1_000_000; value += 7) {
+            int index = LatencyHistogram.index(value);
+            Assert.assertTrue(LatencyHistogram.highestValue(index) >= value);
+            Assert.assertTrue(index == 0 || LatencyHistogram.highestValue(index - 1) < value);
+        }
+        Assert.assertTrue(LatencyHistogram.index(Long.MAX_VALUE) >= 0);
+    }
+
+    @Test
+    public void percentiles()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(1000, histogram.getMax(TimeUnit.MICROSECONDS));
+        Assert.assertEquals(500, histogram.getValueAtPercentile(50, TimeUnit.MICROSECONDS), 500 * 0.04);
+        Assert.assertEquals(990, histogram.getValueAtPercentile(99, TimeUnit.MICROSECONDS), 990 * 0.04);
+        Assert.assertEquals(1000, histogram.getValueAtPercentile(100, TimeUnit.MICROSECONDS));
+        Assert.assertEquals(500.5, histogram.getMean(TimeUnit.MICROSECONDS), 0.001);
+
+        histogram.reset();
+
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getValueAtPercentile(99, TimeUnit.MICROSECONDS));
+    }
+}
@@ -0,0 +1,228 @@
+package com.glookast.api.capture;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.glookast.commons.capture.CaptureJob;
+import com.glookast.commons.capture.TransferJob;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NotificationReceiverTest
+{
+    private final UUID captureJobId = UUID.randomUUID();
+    private final UUID notificationEndpointId = UUID.randomUUID();
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+    private volatile String captureJobs;
+    private StubHttpServer server;
+    private CaptureService captureService;
+    private NotificationReceiver notificationReceiver;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        captureJobs = "[" + captureJob("PENDING") + "]";
+        server = new StubHttpServer()
+            .handle("notification-endpoints", exchange -> StubHttpServer.respond(exchange, 200, "{\"id\":\"" + notificationEndpointId + "\"}"))
+            .handle("capture-jobs", exchange -> StubHttpServer.respond(exchange, 200, captureJobs))
+            .json("transfer-jobs", "[{\"id\":\"transfer-1\"}]");
+        captureService = new CaptureService("localhost", server.getPort());
+
+        notificationReceiver = new NotificationReceiver(captureService, "localhost", InetAddress.getLoopbackAddress(), 0, new CaptureEventListener()
+        {
+            @Override
+            public void onCaptureJobChanged(CaptureJob captureJob)
+            {
+                events.add("changed " + captureJob.getStatus());
+            }
+
+            @Override
+            public void onCaptureJobRemoved(UUID captureJobId)
+            {
+                events.add("removed");
+            }
+
+            @Override
+            public void onTransferJobChanged(TransferJob transferJob)
+            {
+                events.add("transfer " + transferJob.getId());
+            }
+
+            @Override
+            public void onReconciled()
+            {
+                events.add("reconciled");
+            }
+        }, null, 1, TimeUnit.HOURS);
+    }
+
+    @After
+    public void tearDown()
+    {
+        notificationReceiver.close();
+        captureService.close();
+        server.close();
+    }
+
+    @Test
+    public void bindAddress() throws Exception
+    {
+        notificationReceiver.start();
+
+        Assert.assertEquals(InetAddress.getLoopbackAddress(), notificationReceiver.getBindAddress());
+        Assert.assertTrue(notificationReceiver.getCallbackUrl().startsWith("http://localhost:"));
+        Assert.assertEquals(notificationEndpointId, notificationReceiver.getNotificationEndpointId());
+        Assert.assertTrue(notificationReceiver.isConnected());
+    }
+
+    @Test
+    public void reconcile() throws Exception
+    {
+        notificationReceiver.start();
+
+        Assert.assertEquals("changed PENDING", next());
+        Assert.assertEquals("transfer transfer-1", next());
+        Assert.assertEquals("reconciled", next());
+
+        // an unchanged state is not reported again, a job that is gone is reported as removed
+        notificationReceiver.reconcileNow();
+        Assert.assertEquals("reconciled", next());
+
+        captureJobs = "[]";
+        notificationReceiver.reconcileNow();
+        Assert.assertEquals("removed", next());
+        Assert.assertEquals("reconciled", next());
+    }
+
+    @Test
+    public void dispatch() throws Exception
+    {
+        notificationReceiver.start();
+        Assert.assertEquals("changed PENDING", next());
+        Assert.assertEquals("transfer transfer-1", next());
+        Assert.assertEquals("reconciled", next());
+
+        Assert.assertEquals(HttpURLConnection.HTTP_NO_CONTENT, notify("{\"captureJob\":" + captureJob("RUNNING") + "}"));
+        Assert.assertEquals("changed RUNNING", next());
+
+        Assert.assertEquals(HttpURLConnection.HTTP_NO_CONTENT, notify("{\"captureJob\":" + captureJob("RUNNING") + "}"));
+        Assert.assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, notify("{"));
+
+        // a notification without a payload makes the receiver fetch the current state
+        captureJobs = "[" + captureJob("RUNNING") + "]";
+        Assert.assertEquals(HttpURLConnection.HTTP_NO_CONTENT, notify("{}"));
+        Assert.assertEquals("reconciled", next());
+        Assert.assertNull(events.poll());
+    }
+
+    @Test
+    public void registrationWithoutIdBacksOff() throws Exception
+    {
+        Map<UUID, String> endpoints = new ConcurrentHashMap<>();
+        AtomicBoolean returnIds = new AtomicBoolean(true);
+        AtomicInteger registrations = new AtomicInteger();
+        ObjectMapper objectMapper = new ObjectMapper();
+        try (StubHttpServer endpointServer = new StubHttpServer()
+            .handle("notification-endpoints", exchange -> {
+                String path = exchange.getRequestURI().getPath();
+                UUID id = path.endsWith("/notification-endpoints") ? null : UUID.fromString(path.substring(path.lastIndexOf('/') + 1));
+                switch (exchange.getRequestMethod()) {
+                    case "POST":
+                        registrations.incrementAndGet();
+                        UUID created = UUID.randomUUID();
+                        endpoints.put(created, objectMapper.readTree(exchange.getRequestBody()).get("url").asText());
+                        StubHttpServer.respond(exchange, returnIds.get() ? 200 : 204, returnIds.get() ? "{\"id\":\"" + created + "\"}" : null);
+                        break;
+                    case "DELETE":
+                        endpoints.remove(id);
+                        StubHttpServer.respond(exchange, 204, null);
+                        break;
+                    default:
+                        if (id == null) {
+                            List<Map<String, Object>> list = new ArrayList<>();
+                            endpoints.forEach((key, url) -> {
+                                Map<String, Object> endpoint = new HashMap<>();
+                                endpoint.put("id", key);
+                                endpoint.put("url", url);
+                                list.add(endpoint);
+                            });
+                            StubHttpServer.respond(exchange, 200, objectMapper.writeValueAsString(list));
+                        } else if (endpoints.containsKey(id)) {
+                            StubHttpServer.respond(exchange, 200, "{\"id\":\"" + id + "\",\"url\":\"" + endpoints.get(id) + "\"}");
+                        } else {
+                            StubHttpServer.respond(exchange, 404, "{\"status\":404}");
+                        }
+                }
+            })
+            .json("capture-jobs", "[]")
+            .json("transfer-jobs", "[]")) {
+            CaptureService endpointService = new CaptureService("localhost", endpointServer.getPort());
+            NotificationReceiver receiver = new NotificationReceiver(endpointService, "localhost", InetAddress.getLoopbackAddress(), 0, new CaptureEventListener()
+            {
+            }, null, 20, TimeUnit.MILLISECONDS);
+            try {
+                receiver.start();
+                Assert.assertEquals(1, endpoints.size());
+
+                // the server loses the endpoint and from now on registers new ones without returning their id
+                returnIds.set(false);
+                endpoints.clear();
+                Thread.sleep(1000);
+
+                Assert.assertFalse(receiver.isConnected());
+                Assert.assertNull(receiver.getNotificationEndpointId());
+                Assert.assertTrue(String.valueOf(endpoints), endpoints.size() <= 1);
+                // 20, 40, 80, 160, 320 and 640 ms apart instead of every 20 ms
+                Assert.assertTrue(String.valueOf(registrations.get()), registrations.get() <= 8);
+            } finally {
+                receiver.close();
+                endpointService.close();
+            }
+        }
+    }
+
+    private String next() throws InterruptedException
+    {
+        return events.poll(5, TimeUnit.SECONDS);
+    }
+
+    private String captureJob(String status)
+    {
+        return "{\"id\":\"" + captureJobId + "\",\"status\":\"" + status + "\"}";
+    }
+
+    private int notify(String json) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL(notificationReceiver.getCallbackUrl()).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream outputStream = connection.getOutputStream()) {
+            outputStream.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.glookast.api.capture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ResilienceTest
+{
+    @Test
+    public void hedgeLoserIsAborted() throws Exception
+    {
+        AtomicInteger requests = new AtomicInteger();
+        CountDownLatch aborted = new CountDownLatch(1);
+        try (StubHttpServer server = new StubHttpServer().handle("channels/1", exchange -> {
+            if (requests.incrementAndGet() > 1) {
+                StubHttpServer.respond(exchange, 200, "{}");
+                return;
+            }
+            // the first copy keeps trickling whitespace until the client hangs up
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                for (int i = 0; i < 500; i++) {
+                    outputStream.write(' ');
+                    outputStream.flush();
+                    Thread.sleep(10);
+                }
+            } catch (IOException e) {
+                aborted.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        })) {
+            CaptureService captureService = new CaptureService("localhost", server.getPort());
+            captureService.setResiliencePolicy(ResiliencePolicy.defaults().hedgeDelay(50, TimeUnit.MILLISECONDS));
+            try {
+                Assert.assertNotNull(captureService.getChannel(1));
+                Assert.assertEquals(1, captureService.getHedgeCount());
+                Assert.assertTrue(aborted.await(2, TimeUnit.SECONDS));
+            } finally {
+                captureService.close();
+            }
+        }
+    }
+
+    @Test
+    public void streamsRespectTheCircuitBreaker() throws Exception
+    {
+        try (StubHttpServer server = new StubHttpServer().handle("capture-jobs", exchange -> StubHttpServer.respond(exchange, 503, null))) {
+            CaptureService captureService = new CaptureService("localhost", server.getPort());
+            captureService.setResiliencePolicy(ResiliencePolicy.defaults().maxRetries(0).failureThreshold(1));
+            try {
+                try {
+                    captureService.streamCaptureJobs().close();
+                    Assert.fail();
+                } catch (ApiException ignored) {
+                }
+                try {
+                    captureService.streamCaptureJobs().close();
+                    Assert.fail();
+                } catch (CircuitBreakerOpenException ignored) {
+                }
+                Assert.assertEquals(CircuitBreaker.State.OPEN, captureService.getCircuitBreaker().getState());
+                Assert.assertEquals(1, server.getRequestCount());
+            } finally {
+                captureService.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.glookast.api.capture;
+
+import com.glookast.commons.capture.Channel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightTest
+{
+    @Test
+    public void followersShareTheResponse() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        try (StubHttpServer server = new StubHttpServer().handle("channels", exchange -> {
+            await(release);
+            StubHttpServer.respond(exchange, 200, "[{},{}]");
+        })) {
+            CaptureService captureService = captureService(server);
+            ExecutorService executor = Executors.newCachedThreadPool();
+            try {
+                Future<List<Channel>> leader = executor.submit(captureService::getChannels);
+                awaitRequests(server, 1);
+                Future<List<Channel>> first = executor.submit(captureService::getChannels);
+                Future<List<Channel>> second = executor.submit(captureService::getChannels);
+                awaitSharedGets(captureService, 2);
+                release.countDown();
+
+                Assert.assertEquals(2, leader.get(5, TimeUnit.SECONDS).size());
+                Assert.assertEquals(2, first.get(5, TimeUnit.SECONDS).size());
+                Assert.assertNotSame(leader.get().get(0), first.get().get(0));
+                Assert.assertNotSame(first.get().get(0), second.get().get(0));
+                Assert.assertEquals(1, server.getRequestCount());
+            } finally {
+                executor.shutdownNow();
+                captureService.close();
+            }
+        }
+    }
+
+    @Test
+    public void leaderDeadlineDoesNotFailFollowers() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger requests = new AtomicInteger();
+        try (StubHttpServer server = new StubHttpServer().handle("channels", exchange -> {
+            if (requests.incrementAndGet() == 1) {
+                await(release);
+            }
+            StubHttpServer.respond(exchange, 200, "[{}]");
+        })) {
+            CaptureService captureService = captureService(server);
+            ExecutorService executor = Executors.newCachedThreadPool();
+            try {
+                Future<List<Channel>> leader = executor.submit(() -> {
+                    try (CallContext ignored = CallContext.timeout(500, TimeUnit.MILLISECONDS)) {
+                        return captureService.getChannels();
+                    }
+                });
+                awaitRequests(server, 1);
+                Future<List<Channel>> follower = executor.submit(captureService::getChannels);
+                awaitSharedGets(captureService, 1);
+
+                assertFails(leader, DeadlineExceededException.class);
+                Assert.assertEquals(1, follower.get(5, TimeUnit.SECONDS).size());
+                Assert.assertEquals(2, server.getRequestCount());
+            } finally {
+                release.countDown();
+                executor.shutdownNow();
+                captureService.close();
+            }
+        }
+    }
+
+    @Test
+    public void leaderCancellationDoesNotFailFollowers() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger requests = new AtomicInteger();
+        try (StubHttpServer server = new StubHttpServer().handle("channels", exchange -> {
+            if (requests.incrementAndGet() == 1) {
+                await(release);
+            }
+            StubHttpServer.respond(exchange, 200, "[{}]");
+        })) {
+            CaptureService captureService = captureService(server);
+            ExecutorService executor = Executors.newCachedThreadPool();
+            try {
+                CompletableFuture<CallContext> leaderContext = new CompletableFuture<>();
+                Future<List<Channel>> leader = executor.submit(() -> {
+                    try (CallContext context = CallContext.cancellable()) {
+                        leaderContext.complete(context);
+                        return captureService.getChannels();
+                    }
+                });
+                awaitRequests(server, 1);
+                Future<List<Channel>> first = executor.submit(captureService::getChannels);
+                Future<List<Channel>> second = executor.submit(captureService::getChannels);
+                awaitSharedGets(captureService, 2);
+
+                leaderContext.get().cancel();
+
+                assertFails(leader, InterruptedIOException.class);
+                Assert.assertEquals(1, first.get(5, TimeUnit.SECONDS).size());
+                Assert.assertEquals(1, second.get(5, TimeUnit.SECONDS).size());
+                // one of the followers sends the request again and the other one waits for it
+                Assert.assertEquals(2, server.getRequestCount());
+            } finally {
+                release.countDown();
+                executor.shutdownNow();
+                captureService.close();
+            }
+        }
+    }
+
+    @Test
+    public void errorsAreShared() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        try (StubHttpServer server = new StubHttpServer().handle("channels", exchange -> {
+            await(release);
+            StubHttpServer.respond(exchange, 500, null);
+        })) {
+            CaptureService captureService = captureService(server);
+            ExecutorService executor = Executors.newCachedThreadPool();
+            try {
+                Future<List<Channel>> leader = executor.submit(captureService::getChannels);
+                awaitRequests(server, 1);
+                Future<List<Channel>> follower = executor.submit(captureService::getChannels);
+                awaitSharedGets(captureService, 1);
+                release.countDown();
+
+                assertFails(leader, ApiException.class);
+                assertFails(follower, ApiException.class);
+                Assert.assertEquals(1, server.getRequestCount());
+            } finally {
+                executor.shutdownNow();
+                captureService.close();
+            }
+        }
+    }
+
+    private static CaptureService captureService(StubHttpServer server)
+    {
+        CaptureService captureService = new CaptureService("localhost", server.getPort());
+        captureService.setSingleFlight(true);
+        return captureService;
+    }
+
+    private static void assertFails(Future<?> future, Class<? extends Exception> type) throws Exception
+    {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(String.valueOf(e.getCause()), type.isInstance(e.getCause()));
+        }
+    }
+
+    private static void awaitRequests(StubHttpServer server, int count) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.getRequestCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static void awaitSharedGets(CaptureService captureService, int count) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (captureService.getSharedGetCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch)
+    {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.glookast.api.capture;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// a local stand-in for a capture server, handlers are registered per path below /api/v1/
+class StubHttpServer implements AutoCloseable
+{
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    StubHttpServer() throws IOException
+    {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "StubHttpServer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    int getRequestCount()
+    {
+        return requestCount.get();
+    }
+
+    StubHttpServer handle(String path, HttpHandler handler)
+    {
+        server.createContext("/api/v1/" + path, exchange -> {
+            requestCount.incrementAndGet();
+            try {
+                handler.handle(exchange);
+            } finally {
+                exchange.close();
+            }
+        });
+        return this;
+    }
+
+    StubHttpServer json(String path, String json)
+    {
+        return handle(path, exchange -> respond(exchange, 200, json));
+    }
+
+    static void respond(HttpExchange exchange, int status, String json) throws IOException
+    {
+        byte[] body = json != null ? json.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (json != null) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+        }
+        if (status == 204) {
+            // the JDK 8 server drops the connection after a 204 without saying so, clients would reuse it
+            exchange.getResponseHeaders().set("Connection", "close");
+        }
+        exchange.sendResponseHeaders(status, body.length > 0 ? body.length : -1);
+        if (body.length > 0) {
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,190 @@
+package com.glookast.api.capture;
+
+import com.glookast.commons.capture.CaptureJob;
+import com.glookast.commons.capture.CaptureJobStatus;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Path;
+import java.util.UUID;
+
+public class ThumbnailCacheTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void memoryEviction()
+    {
+        ThumbnailCache thumbnailCache = new ThumbnailCache(200);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+
+        thumbnailCache.put(first, thumbnailCache.currentGeneration(first), new byte[100]);
+        thumbnailCache.put(second, thumbnailCache.currentGeneration(second), new byte[100]);
+        Assert.assertNotNull(thumbnailCache.get(first));
+        thumbnailCache.put(third, thumbnailCache.currentGeneration(third), new byte[100]);
+
+        Assert.assertNotNull(thumbnailCache.get(first));
+        Assert.assertNull(thumbnailCache.get(second));
+        Assert.assertNotNull(thumbnailCache.get(third));
+        Assert.assertEquals(200, thumbnailCache.getMemoryBytes());
+    }
+
+    @Test
+    public void diskTier() throws IOException
+    {
+        Path directory = folder.newFolder().toPath();
+        UUID captureJobId = UUID.randomUUID();
+        byte[] thumbnail = {1, 2, 3, 4};
+
+        ThumbnailCache thumbnailCache = new ThumbnailCache(0, directory, 1024);
+        thumbnailCache.put(captureJobId, thumbnailCache.currentGeneration(captureJobId), thumbnail);
+        Assert.assertEquals(0, thumbnailCache.getMemoryBytes());
+        Assert.assertEquals(4, thumbnailCache.getDiskBytes());
+
+        // disk hits are served from the mapped file and not copied onto the heap
+        ThumbnailCache reopened = new ThumbnailCache(1024, directory, 1024);
+        Assert.assertArrayEquals(thumbnail, bytes(reopened.get(captureJobId)));
+        Assert.assertArrayEquals(thumbnail, bytes(reopened.get(captureJobId)));
+        Assert.assertEquals(2, reopened.getDiskHitCount());
+        Assert.assertEquals(0, reopened.getMemoryBytes());
+    }
+
+    @Test
+    public void diskEviction() throws IOException
+    {
+        ThumbnailCache thumbnailCache = new ThumbnailCache(0, folder.newFolder().toPath(), 10);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        thumbnailCache.put(first, thumbnailCache.currentGeneration(first), new byte[6]);
+        thumbnailCache.put(second, thumbnailCache.currentGeneration(second), new byte[6]);
+
+        Assert.assertNull(thumbnailCache.get(first));
+        Assert.assertNotNull(thumbnailCache.get(second));
+        Assert.assertEquals(6, thumbnailCache.getDiskBytes());
+    }
+
+    @Test
+    public void invalidate() throws IOException
+    {
+        ThumbnailCache thumbnailCache = new ThumbnailCache(1024, folder.newFolder().toPath(), 1024);
+        UUID captureJobId = UUID.randomUUID();
+
+        long generation = thumbnailCache.currentGeneration(captureJobId);
+        thumbnailCache.put(captureJobId, generation, new byte[8]);
+        thumbnailCache.invalidate(captureJobId);
+
+        Assert.assertNull(thumbnailCache.get(captureJobId));
+        Assert.assertEquals(0, thumbnailCache.getMemoryBytes());
+        Assert.assertEquals(0, thumbnailCache.getDiskBytes());
+
+        // a response fetched before the invalidation must not be stored
+        thumbnailCache.put(captureJobId, generation, new byte[8]);
+        Assert.assertNull(thumbnailCache.get(captureJobId));
+    }
+
+    @Test
+    public void invalidationIsPerJob()
+    {
+        ThumbnailCache thumbnailCache = new ThumbnailCache(1024);
+        UUID captureJobId = new UUID(0, 1);
+        UUID other = new UUID(0, 2);
+
+        long generation = thumbnailCache.currentGeneration(captureJobId);
+        thumbnailCache.invalidate(other);
+        thumbnailCache.put(captureJobId, generation, new byte[8]);
+
+        Assert.assertNotNull(thumbnailCache.get(captureJobId));
+    }
+
+    @Test
+    public void readOnly()
+    {
+        ThumbnailCache thumbnailCache = new ThumbnailCache(1024);
+        UUID captureJobId = UUID.randomUUID();
+        byte[] thumbnail = {1, 2, 3};
+
+        thumbnailCache.put(captureJobId, thumbnailCache.currentGeneration(captureJobId), thumbnail);
+        thumbnail[0] = 9;
+
+        ByteBuffer cached = thumbnailCache.get(captureJobId);
+        Assert.assertEquals(1, cached.get(0));
+        try {
+            cached.put(0, (byte) 9);
+            Assert.fail();
+        } catch (ReadOnlyBufferException ignored) {
+        }
+    }
+
+    @Test
+    public void statusChange() throws IOException
+    {
+        ThumbnailCache thumbnailCache = new ThumbnailCache(1024, folder.newFolder().toPath(), 1024);
+        UUID captureJobId = UUID.randomUUID();
+
+        thumbnailCache.observe(captureJob(captureJobId, CaptureJobStatus.RUNNING));
+        thumbnailCache.put(captureJobId, thumbnailCache.currentGeneration(captureJobId), new byte[8]);
+
+        thumbnailCache.observe(captureJob(captureJobId, CaptureJobStatus.RUNNING));
+        Assert.assertNotNull(thumbnailCache.get(captureJobId));
+
+        thumbnailCache.observe(captureJob(captureJobId, CaptureJobStatus.COMPLETED));
+        Assert.assertNull(thumbnailCache.get(captureJobId));
+        Assert.assertEquals(0, thumbnailCache.getDiskBytes());
+    }
+
+    @Test
+    public void cachedBeforeFirstObservation()
+    {
+        ThumbnailCache thumbnailCache = new ThumbnailCache(1024);
+        UUID captureJobId = UUID.randomUUID();
+
+        // nothing says which status this thumbnail belongs to, so the first status seen replaces it
+        thumbnailCache.put(captureJobId, thumbnailCache.currentGeneration(captureJobId), new byte[8]);
+        thumbnailCache.observe(captureJob(captureJobId, CaptureJobStatus.RUNNING));
+
+        Assert.assertNull(thumbnailCache.get(captureJobId));
+    }
+
+    @Test
+    public void statusSurvivesRestart() throws IOException
+    {
+        Path directory = folder.newFolder().toPath();
+        UUID captureJobId = UUID.randomUUID();
+
+        ThumbnailCache thumbnailCache = new ThumbnailCache(0, directory, 1024);
+        thumbnailCache.observe(captureJob(captureJobId, CaptureJobStatus.RUNNING));
+        thumbnailCache.put(captureJobId, thumbnailCache.currentGeneration(captureJobId), new byte[8]);
+
+        ThumbnailCache reopened = new ThumbnailCache(0, directory, 1024);
+        reopened.observe(captureJob(captureJobId, CaptureJobStatus.RUNNING));
+        Assert.assertNotNull(reopened.get(captureJobId));
+
+        reopened.observe(captureJob(captureJobId, CaptureJobStatus.COMPLETED));
+        Assert.assertNull(reopened.get(captureJobId));
+        Assert.assertEquals(0, new ThumbnailCache(0, directory, 1024).getDiskBytes());
+    }
+
+    private static CaptureJob captureJob(UUID captureJobId, CaptureJobStatus status)
+    {
+        CaptureJob captureJob = new CaptureJob();
+        captureJob.setId(captureJobId);
+        captureJob.setStatus(status);
+        return captureJob;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,210 @@
+package com.glookast.api.capture;
+
+import com.glookast.commons.timecode.TimecodeCollection;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TimecodeFeedTest
+{
+    @Test
+    public void ring()
+    {
+        TimecodeFeed feed = new TimecodeFeed(null, 1, 25, 4, 40, TimeUnit.MILLISECONDS);
+        TimecodeFeed.Sample sample = new TimecodeFeed.Sample();
+
+        Assert.assertFalse(feed.readLatest(sample));
+
+        for (int i = 0; i < 6; i++) {
+            feed.publish(new TimecodeCollection(), i);
+        }
+
+        Assert.assertEquals(5, feed.getSequence());
+        Assert.assertFalse(feed.read(1, sample));
+        Assert.assertFalse(feed.read(6, sample));
+        Assert.assertTrue(feed.read(2, sample));
+        Assert.assertEquals(2, sample.getSampledAt());
+        Assert.assertTrue(feed.isValid(sample));
+
+        Assert.assertTrue(feed.readLatest(sample));
+        Assert.assertEquals(5, sample.getSequence());
+
+        feed.publish(new TimecodeCollection(), 6);
+        feed.publish(new TimecodeCollection(), 7);
+        feed.publish(new TimecodeCollection(), 8);
+        feed.publish(new TimecodeCollection(), 9);
+        Assert.assertFalse(feed.isValid(sample));
+    }
+
+    @Test
+    public void awaitNext() throws InterruptedException
+    {
+        TimecodeFeed feed = new TimecodeFeed(null, 1, 25, 4, 40, TimeUnit.MILLISECONDS);
+
+        Assert.assertEquals(-1, feed.awaitNext(-1, 10, TimeUnit.MILLISECONDS));
+
+        Thread writer = new Thread(() -> feed.publish(new TimecodeCollection(), 0));
+        writer.start();
+        Assert.assertEquals(0, feed.awaitNext(-1, 5, TimeUnit.SECONDS));
+        writer.join();
+    }
+
+    // the writer stores its sequence as the sample time, a torn read would pair a slot with the wrong time
+    @Test
+    public void concurrentReaders() throws InterruptedException
+    {
+        TimecodeFeed feed = new TimecodeFeed(null, 1, 25, 8, 40, TimeUnit.MILLISECONDS);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong torn = new AtomicLong();
+        AtomicLong reads = new AtomicLong();
+
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> {
+                TimecodeFeed.Sample sample = new TimecodeFeed.Sample();
+                while (running.get()) {
+                    if (feed.readLatest(sample)) {
+                        reads.incrementAndGet();
+                        if (sample.getSampledAt() != sample.getSequence()) {
+                            torn.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            readers[i].start();
+        }
+
+        for (long sequence = 0; sequence < 200_000; sequence++) {
+            feed.publish(new TimecodeCollection(), sequence);
+        }
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        Assert.assertTrue(reads.get() > 0);
+        Assert.assertEquals(0, torn.get());
+    }
+
+    @Test
+    public void recyclesCollections() throws Exception
+    {
+        try (StubHttpServer server = new StubHttpServer().json("channels/1/timecodes", "{}")) {
+            CaptureService captureService = new CaptureService("localhost", server.getPort());
+            TimecodeFeed feed = new TimecodeFeed(captureService, 1, 25, 2, 1, TimeUnit.MILLISECONDS);
+            TimecodeFeed.Sample sample = new TimecodeFeed.Sample();
+            try {
+                feed.start();
+                Assert.assertEquals(0, feed.awaitNext(-1, 5, TimeUnit.SECONDS));
+                Assert.assertTrue(feed.read(0, sample));
+                TimecodeCollection first = sample.getTimecodes();
+
+                Assert.assertTrue(feed.awaitNext(1, 5, TimeUnit.SECONDS) >= 2);
+                feed.close();
+                Thread.sleep(100);
+
+                // with two slots every even sequence decodes into the collection of sequence 0
+                long sequence = feed.getSequence();
+                Assert.assertTrue(feed.read(sequence - (sequence & 1), sample));
+                Assert.assertSame(first, sample.getTimecodes());
+            } finally {
+                feed.close();
+                captureService.close();
+            }
+        }
+    }
+
+    @Test
+    public void backsOffOnErrors() throws Exception
+    {
+        try (StubHttpServer server = new StubHttpServer().handle("channels/1/timecodes", exchange -> StubHttpServer.respond(exchange, 503, null))) {
+            CaptureService captureService = new CaptureService("localhost", server.getPort());
+            TimecodeFeed feed = new TimecodeFeed(captureService, 1, 25, 4, 5, TimeUnit.MILLISECONDS);
+            try {
+                feed.start();
+                Thread.sleep(500);
+            } finally {
+                feed.close();
+                captureService.close();
+            }
+
+            // 5, 10, 20, 40, 80, 160 and 320 ms apart instead of every 5 ms
+            Assert.assertTrue(feed.getErrorCount() >= 3);
+            Assert.assertTrue(server.getRequestCount() <= 10);
+        }
+    }
+
+    @Test
+    public void failedPollKeepsTheLatestSample() throws Exception
+    {
+        AtomicInteger requests = new AtomicInteger();
+        try (StubHttpServer server = new StubHttpServer().handle("channels/1/timecodes", exchange -> {
+            if (requests.incrementAndGet() == 1) {
+                StubHttpServer.respond(exchange, 200, "{}");
+            } else {
+                StubHttpServer.respond(exchange, 503, null);
+            }
+        })) {
+            CaptureService captureService = new CaptureService("localhost", server.getPort());
+            TimecodeFeed feed = new TimecodeFeed(captureService, 1, 25, 2, 5, TimeUnit.MILLISECONDS);
+            TimecodeFeed.Sample sample = new TimecodeFeed.Sample();
+            try {
+                feed.start();
+                Assert.assertEquals(0, feed.awaitNext(-1, 5, TimeUnit.SECONDS));
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (feed.getErrorCount() < 2 && System.nanoTime() < deadline) {
+                    Thread.sleep(5);
+                }
+
+                Assert.assertTrue(feed.getErrorCount() >= 2);
+                Assert.assertTrue(feed.readLatest(sample));
+                Assert.assertEquals(0, sample.getSequence());
+            } finally {
+                feed.close();
+                captureService.close();
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void singleSlotIsRejected()
+    {
+        new TimecodeFeed(null, 1, 25, 1, 40, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void extrapolatedFrames()
+    {
+        TimecodeFeed feed = new TimecodeFeed(null, 1, 25, 4, 40, TimeUnit.MILLISECONDS);
+        TimecodeFeed.Sample sample = new TimecodeFeed.Sample();
+        feed.publish(new TimecodeCollection(), 1_000_000_000L);
+        feed.readLatest(sample);
+
+        Assert.assertEquals(0, sample.getExtrapolatedFrames(1_000_000_000L));
+        Assert.assertEquals(2, sample.getExtrapolatedFrames(1_100_000_000L));
+        Assert.assertEquals(25, sample.getExtrapolatedFrames(2_000_000_000L));
+    }
+
+    @Test
+    public void extrapolateTimecode()
+    {
+        Assert.assertEquals("10:00:01:00", TimecodeFeed.extrapolate("10:00:00:24", 1, 25));
+        Assert.assertEquals("10:00:00:00", TimecodeFeed.extrapolate("10:00:00:00", 0, 25));
+        Assert.assertEquals("00:00:00:01", TimecodeFeed.extrapolate("23:59:59:24", 2, 25));
+
+        // drop frame skips frames 0 and 1 at the start of every minute except each tenth
+        Assert.assertEquals("00:01:00;02", TimecodeFeed.extrapolate("00:00:59;29", 1, 29.97));
+        Assert.assertEquals("00:10:00;00", TimecodeFeed.extrapolate("00:09:59;29", 1, 29.97));
+        Assert.assertEquals("01:00:00;00", TimecodeFeed.extrapolate("00:00:00;00", 107892, 29.97));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void extrapolateInvalid()
+    {
+        TimecodeFeed.extrapolate("10:00:00", 1, 25);
+    }
+}
@@ -0,0 +1,171 @@
+package com.glookast.api.capture;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class TransportCommandCoalescerTest
+{
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private RecordingCaptureService captureService;
+    private TransportCommandCoalescer coalescer;
+
+    @Before
+    public void setUp()
+    {
+        captureService = new RecordingCaptureService();
+        coalescer = new TransportCommandCoalescer(captureService);
+    }
+
+    @After
+    public void tearDown()
+    {
+        coalescer.close();
+        captureService.close();
+    }
+
+    @Test
+    public void stepsMergeAndSeekSupersedes() throws Exception
+    {
+        CompletableFuture<Void> first = coalescer.playoutStep(1, 1);
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Void> a = coalescer.playoutStep(1, 2);
+        CompletableFuture<Void> b = coalescer.playoutStep(1, 3);
+        CompletableFuture<Void> seek = coalescer.playoutSeek(1, 100);
+        CompletableFuture<Void> c = coalescer.playoutStep(1, 4);
+        CompletableFuture<Void> d = coalescer.playoutStep(1, 5);
+
+        release.countDown();
+        CompletableFuture.allOf(first, a, b, seek, c, d).get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(Arrays.asList("playoutStep 1", "playoutSeek 100", "playoutStep 9"), sent);
+        Assert.assertEquals(3, coalescer.getSentCount());
+        Assert.assertEquals(3, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void motionDoesNotSupersedePosition() throws Exception
+    {
+        CompletableFuture<Void> first = coalescer.vtrJog(1, 1);
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Void> step = coalescer.vtrStep(1, 2);
+        CompletableFuture<Void> shuttle = coalescer.vtrShuttle(1, 4);
+        CompletableFuture<Void> jog = coalescer.vtrJog(1, -2);
+
+        release.countDown();
+        CompletableFuture.allOf(first, step, shuttle, jog).get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(Arrays.asList("vtrJog 1", "vtrStep 2", "vtrJog -2"), sent);
+        Assert.assertEquals(1, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void lanesAreIndependent() throws Exception
+    {
+        CompletableFuture<Void> first = coalescer.playoutStep(1, 1);
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Void> other = coalescer.playoutSeek(2, 50);
+        other.get(5, TimeUnit.SECONDS);
+        Assert.assertFalse(first.isDone());
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(Arrays.asList("playoutStep 1", "playoutSeek 50"), sent);
+        Assert.assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void closeCancelsWaitingCommands() throws Exception
+    {
+        CompletableFuture<Void> first = coalescer.playoutStep(1, 1);
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Void> step = coalescer.playoutStep(1, 2);
+        CompletableFuture<Void> superseded = coalescer.playoutStep(1, 3);
+        CompletableFuture<Void> seek = coalescer.playoutSeek(1, 100);
+
+        coalescer.close();
+        Assert.assertTrue(step.isCancelled());
+        Assert.assertTrue(superseded.isCancelled());
+        Assert.assertTrue(seek.isCancelled());
+
+        try {
+            coalescer.playoutSeek(2, 50).get(1, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(Collections.singletonList("playoutStep 1"), sent);
+    }
+
+    // the first command blocks until released so that the following ones queue up behind it
+    private class RecordingCaptureService extends CaptureService
+    {
+        private RecordingCaptureService()
+        {
+            super("localhost", 1);
+        }
+
+        private void record(int channelId, String command)
+        {
+            sent.add(command);
+            if (channelId == 1 && started.getCount() > 0) {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void playoutSeek(int channelId, long position)
+        {
+            record(channelId, "playoutSeek " + position);
+        }
+
+        @Override
+        public void playoutStep(int channelId, long distance)
+        {
+            record(channelId, "playoutStep " + distance);
+        }
+
+        @Override
+        public void vtrJog(int channelId, int speed)
+        {
+            record(channelId, "vtrJog " + speed);
+        }
+
+        @Override
+        public void vtrShuttle(int channelId, int speed)
+        {
+            record(channelId, "vtrShuttle " + speed);
+        }
+
+        @Override
+        public void vtrStep(int channelId, int distance)
+        {
+            record(channelId, "vtrStep " + distance);
+        }
+    }
+}